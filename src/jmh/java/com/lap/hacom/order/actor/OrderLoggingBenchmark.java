@@ -0,0 +1,123 @@
+package com.lap.hacom.order.actor;
+
+import com.lap.hacom.order.grpc.OrderServiceImpl;
+import com.lap.hacom.order.service.SmppService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.async.AsyncLoggerContext;
+import org.apache.logging.log4j.util.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging cost of one order that is stored and notified by SMS. {@code before} writes the nine
+ * INFO lines such an order used to log, synchronously and flushed per event; {@code after} makes
+ * the same calls at DEBUG plus the sampled order_summary line, with log4j2.component.properties
+ * as shipped. Both write to order-logging-benchmark.log in java.io.tmpdir. Run with
+ * {@code ./gradlew jmh -PjmhIncludes=OrderLoggingBenchmark}; the gc profiler reports bytes/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OrderLoggingBenchmark {
+
+    // Distinct orderIds, so the summary sample hits its real share of orders
+    private static final int ORDERS = 10_000;
+    private static final int SAMPLE_BUCKETS = 10_000;
+    private static final int SUMMARY_SAMPLE_THRESHOLD = (int) Math.round(0.01 * SAMPLE_BUCKETS);
+
+    private static final Logger serviceLogger = LoggerFactory.getLogger(OrderServiceImpl.class);
+    private static final Logger actorLogger = LoggerFactory.getLogger(OrderProcessorActor.class);
+    private static final Logger smppLogger = LoggerFactory.getLogger(SmppService.class);
+    private static final Logger summaryLogger = LoggerFactory.getLogger("com.lap.hacom.order.summary");
+
+    private final String customerId = "CUST001";
+    private final String phoneNumber = "+521234567001";
+    private final List<String> items = List.of("Product A - Laptop", "Product B - Mouse");
+
+    private String[] orderIds;
+    private int next;
+
+    @Setup
+    public void setUp(BenchmarkParams params) {
+        // The logging setup is fixed when the fork starts; refuse to measure the wrong one
+        boolean before = params.getBenchmark().endsWith(".before");
+        boolean async = LogManager.getContext(false) instanceof AsyncLoggerContext;
+        if (async == before || Constants.ENABLE_THREADLOCALS == before) {
+            throw new IllegalStateException("Benchmark " + params.getBenchmark() + " runs with async loggers "
+                    + async + " and thread locals " + Constants.ENABLE_THREADLOCALS);
+        }
+
+        orderIds = new String[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            orderIds[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {
+            "-Dlog4j2.configurationFile=log4j2-logging-before.yml",
+            "-Dlog4j2.contextSelector=org.apache.logging.log4j.core.selector.ClassLoaderContextSelector",
+            "-Dlog4j2.enableThreadlocals=false",
+            "-Dlog4j2.enableDirectEncoders=false"})
+    public void before() {
+        String orderId = nextOrderId();
+        String message = OrderProcessorActor.notificationText(orderId);
+
+        serviceLogger.info("Received gRPC order creation request for order ID: {}", orderId);
+        serviceLogger.info("Order processing message sent to actor for order: {}", orderId);
+        actorLogger.info("Starting order processing for order ID: {}", orderId);
+        actorLogger.info("Order saved successfully to MongoDB: {}", orderId);
+        actorLogger.info("Order status updated to COMPLETED: {}", orderId);
+        smppLogger.info("Sending SMS to {} with message: {}", phoneNumber, message);
+        smppLogger.info("SMS sent successfully to {}", phoneNumber);
+        actorLogger.info("SMS notification sent successfully for order: {}", orderId);
+        actorLogger.info("Sent successful gRPC response for order: {}", orderId);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-logging-after.yml")
+    public void after() {
+        long startNanos = System.nanoTime();
+        String orderId = nextOrderId();
+        String message = OrderProcessorActor.notificationText(orderId);
+
+        serviceLogger.debug("Received gRPC order creation request for order ID: {}", orderId);
+        serviceLogger.debug("Order processing message sent to actor for order: {}", orderId);
+        actorLogger.debug("Starting order processing for order ID: {}", orderId);
+        smppLogger.debug("Sending SMS to {} with message: {}", phoneNumber, message);
+        smppLogger.debug("SMS sent successfully to {}", phoneNumber);
+        actorLogger.debug("SMS notification for order {} sent: {}", orderId, true);
+        actorLogger.debug("Sent successful gRPC response for order: {}", orderId);
+
+        // As OrderProcessorActor.logSummary decides and formats it
+        boolean sampled = Math.floorMod(orderId.hashCode(), SAMPLE_BUCKETS) < SUMMARY_SAMPLE_THRESHOLD;
+        if (sampled || summaryLogger.isDebugEnabled()) {
+            summaryLogger.info("order_summary orderId={} customerId={} shard={} status={} duplicate={} items={} notification={} elapsedMicros={}",
+                    orderId, customerId, "0", "COMPLETED", false, items.size(), "SENT",
+                    (System.nanoTime() - startNanos) / 1_000);
+        }
+    }
+
+    private String nextOrderId() {
+        String orderId = orderIds[next];
+        next = next + 1 == ORDERS ? 0 : next + 1;
+        return orderId;
+    }
+}
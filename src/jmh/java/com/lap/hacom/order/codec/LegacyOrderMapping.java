@@ -0,0 +1,96 @@
+package com.lap.hacom.order.codec;
+
+import com.lap.hacom.order.model.Order;
+import org.bson.types.ObjectId;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The storage path before {@link OrderCodec}: the order as it was modelled then (long field
+ * names, no offset) written and read by Spring Data's reflective mapping. Baseline for the
+ * codec benchmarks.
+ */
+final class LegacyOrderMapping {
+
+    static final List<String> ITEMS = List.of("Product A - Laptop", "Product B - Mouse", "Product C - Keyboard");
+
+    private LegacyOrderMapping() {
+    }
+
+    static MappingMongoConverter converter() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of(
+                OffsetDateTimeToDate.INSTANCE, DateToOffsetDateTime.INSTANCE));
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    static Order newOrder(long sequence) {
+        return new Order(
+                new ObjectId(),
+                "6f1c1f5e-8d4b-4a8e-9a53-" + String.format("%012d", sequence),
+                "CUST" + String.format("%03d", sequence % 1000),
+                "+521234567" + String.format("%03d", sequence % 1000),
+                "COMPLETED",
+                new ArrayList<>(ITEMS),
+                OffsetDateTime.now());
+    }
+
+    static LegacyOrder toLegacy(Order order) {
+        LegacyOrder legacy = new LegacyOrder();
+        legacy._id = order.get_id();
+        legacy.orderId = order.getOrderId();
+        legacy.customerId = order.getCustomerId();
+        legacy.customerPhoneNumber = order.getCustomerPhoneNumber();
+        legacy.status = order.getStatus();
+        legacy.items = order.getItems();
+        legacy.ts = order.getTs();
+        return legacy;
+    }
+
+    static class LegacyOrder {
+        ObjectId _id;
+        String orderId;
+        String customerId;
+        String customerPhoneNumber;
+        String status;
+        List<String> items;
+        OffsetDateTime ts;
+    }
+
+    @WritingConverter
+    enum OffsetDateTimeToDate implements Converter<OffsetDateTime, Date> {
+        INSTANCE;
+
+        @Override
+        public Date convert(OffsetDateTime source) {
+            return Date.from(source.toInstant());
+        }
+    }
+
+    @ReadingConverter
+    enum DateToOffsetDateTime implements Converter<Date, OffsetDateTime> {
+        INSTANCE;
+
+        @Override
+        public OffsetDateTime convert(Date source) {
+            return source.toInstant().atOffset(ZoneOffset.UTC);
+        }
+    }
+}
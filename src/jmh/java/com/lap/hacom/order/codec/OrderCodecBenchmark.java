@@ -0,0 +1,89 @@
+package com.lap.hacom.order.codec;
+
+import com.lap.hacom.order.model.Order;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of one order, legacy reflective mapping vs {@link OrderCodec}. The encoded
+ * document size of each format is printed at setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderCodecBenchmark {
+
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    @Param({"legacy", "compact"})
+    public String format;
+
+    private Order order;
+    private LegacyOrderMapping.LegacyOrder legacyOrder;
+    private MappingMongoConverter converter;
+    private DocumentCodec documentCodec;
+    private OrderCodec orderCodec;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        order = LegacyOrderMapping.newOrder(1);
+        legacyOrder = LegacyOrderMapping.toLegacy(order);
+        converter = LegacyOrderMapping.converter();
+        documentCodec = new DocumentCodec();
+        orderCodec = new OrderCodec(new ItemDictionary(LegacyOrderMapping.ITEMS));
+
+        encoded = encode();
+        System.out.println("Encoded " + format + " order document: " + encoded.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(256);
+        BsonBinaryWriter writer = new BsonBinaryWriter(buffer);
+
+        if ("compact".equals(format)) {
+            orderCodec.encode(writer, order, ENCODER_CONTEXT);
+        } else {
+            Document document = new Document();
+            converter.write(legacyOrder, document);
+            documentCodec.encode(writer, document, ENCODER_CONTEXT);
+        }
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public Object decode() {
+        BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(encoded));
+
+        if ("compact".equals(format)) {
+            return orderCodec.decode(reader, DECODER_CONTEXT);
+        }
+        Document document = documentCodec.decode(reader, DECODER_CONTEXT);
+        return converter.read(LegacyOrderMapping.LegacyOrder.class, document);
+    }
+}
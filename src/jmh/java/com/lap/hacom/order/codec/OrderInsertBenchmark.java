@@ -0,0 +1,107 @@
+package com.lap.hacom.order.codec;
+
+import com.lap.hacom.order.model.Order;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unordered bulk inserts of {@value #BATCH_SIZE} orders against a real mongod, legacy
+ * reflective mapping vs {@link OrderCodec}; multiply ops/s by the batch size for orders/s.
+ * Needs a running mongod, so it is excluded from the default jmh run:
+ * {@code ./gradlew jmh -PjmhIncludes=OrderInsertBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OrderInsertBenchmark {
+
+    static final int BATCH_SIZE = 256;
+
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    @Param({"legacy", "compact"})
+    public String format;
+
+    @Param({"mongodb://127.0.0.1:27017"})
+    public String mongoUri;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private MongoClient client;
+    private MongoCollection<Document> legacyCollection;
+    private MongoCollection<Order> compactCollection;
+    private MappingMongoConverter converter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OrderCodec orderCodec = new OrderCodec(new ItemDictionary(LegacyOrderMapping.ITEMS));
+        client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongoUri))
+                .codecRegistry(CodecRegistries.fromRegistries(
+                        CodecRegistries.fromCodecs(orderCodec),
+                        MongoClientSettings.getDefaultCodecRegistry()))
+                .build());
+
+        MongoDatabase database = client.getDatabase("hacom-order-bench");
+        legacyCollection = database.getCollection("orders_" + format);
+        compactCollection = legacyCollection.withDocumentClass(Order.class);
+        Mono.from(legacyCollection.drop()).block();
+
+        converter = LegacyOrderMapping.converter();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Mono.from(legacyCollection.drop()).block();
+        client.close();
+    }
+
+    @Benchmark
+    public Object insertBatch() {
+        if ("compact".equals(format)) {
+            List<Order> orders = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                orders.add(LegacyOrderMapping.newOrder(sequence.incrementAndGet()));
+            }
+            return Mono.from(compactCollection.insertMany(orders, UNORDERED)).block();
+        }
+
+        List<Document> documents = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Document document = new Document();
+            converter.write(LegacyOrderMapping.toLegacy(LegacyOrderMapping.newOrder(sequence.incrementAndGet())), document);
+            documents.add(document);
+        }
+        return Mono.from(legacyCollection.insertMany(documents, UNORDERED)).block();
+    }
+}
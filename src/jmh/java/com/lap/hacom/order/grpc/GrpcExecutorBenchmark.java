@@ -0,0 +1,128 @@
+package com.lap.hacom.order.grpc;
+
+import com.lap.hacom.order.config.GrpcExecutors;
+import com.lap.hacom.order.config.GrpcTransportConfig;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CreateOrder round trips over loopback for each call executor mode. The service answers at
+ * once, so the numbers are transport and executor overhead: Throughput reports calls/s,
+ * SampleTime the drain time percentiles of a burst of concurrent calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrpcExecutorBenchmark {
+
+    private static final int BURST = 256;
+
+    @Param({"BOUNDED", "DIRECT", "VIRTUAL"})
+    private GrpcTransportConfig.Executor executor;
+
+    @Param({"16"})
+    private int threads;
+
+    private ExecutorService callExecutor;
+    private Server server;
+    private ManagedChannel channel;
+    private OrderServiceGrpc.OrderServiceStub stub;
+    private CreateOrderRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        NettyServerBuilder builder = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .addService(new ImmediateOrderService());
+        callExecutor = GrpcExecutors.callExecutor(executor, threads);
+        if (callExecutor == null) {
+            builder.directExecutor();
+        } else {
+            builder.executor(callExecutor);
+        }
+        server = builder.build().start();
+
+        channel = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort())
+                .usePlaintext()
+                .build();
+        stub = OrderServiceGrpc.newStub(channel);
+
+        request = CreateOrderRequest.newBuilder()
+                .setOrderId("6f1c1f5e-8d4b-4a8e-9a53-2f0a3f5b7c11")
+                .setCustomerId("CUST001")
+                .setCustomerPhoneNumber("+521234567001")
+                .addItems("Product A - Laptop")
+                .addItems("Product B - Mouse")
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        if (callExecutor != null) {
+            callExecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long createOrderBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        for (int i = 0; i < BURST; i++) {
+            stub.createOrder(request, new StreamObserver<>() {
+                @Override
+                public void onNext(CreateOrderResponse response) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onCompleted() {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return done.getCount();
+    }
+
+    private static final class ImmediateOrderService extends OrderServiceGrpc.OrderServiceImplBase {
+
+        @Override
+        public void createOrder(CreateOrderRequest request, StreamObserver<CreateOrderResponse> responseObserver) {
+            responseObserver.onNext(CreateOrderResponse.newBuilder()
+                    .setOrderId(request.getOrderId())
+                    .setStatus("COMPLETED")
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.lap.hacom.order.grpc;
+
+import com.lap.hacom.order.actor.OrderProcessorActor;
+import com.lap.hacom.order.codec.ItemDictionary;
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.model.Order;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-order hot path, stage by stage. Run with {@code ./gradlew jmh}; the gc profiler
+ * reports gc.alloc.rate.norm (bytes/op) for each stage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderHotPathBenchmark {
+
+    private CreateOrderRequest request;
+    private Order order;
+    private OrderCodec orderCodec;
+
+    @Setup
+    public void setUp() {
+        request = CreateOrderRequest.newBuilder()
+                .setOrderId("6f1c1f5e-8d4b-4a8e-9a53-2f0a3f5b7c11")
+                .setCustomerId("CUST001")
+                .setCustomerPhoneNumber("+521234567001")
+                .addItems("Product A - Laptop")
+                .addItems("Product B - Mouse")
+                .addItems("Product C - Keyboard")
+                .build();
+
+        order = newOrder(request);
+
+        orderCodec = new OrderCodec(new ItemDictionary(request.getItemsList()));
+    }
+
+    @Benchmark
+    public boolean validateRequest() {
+        return OrderServiceImpl.isValidRequest(request);
+    }
+
+    @Benchmark
+    public OrderProcessorActor.ProcessOrderMessage buildProcessOrderMessage() {
+        return new OrderProcessorActor.ProcessOrderMessage(
+                request.getOrderId(),
+                request.getCustomerId(),
+                request.getCustomerPhoneNumber(),
+                new ArrayList<>(request.getItemsList()),
+                request.getWaitForNotification(),
+                null,
+                null
+        );
+    }
+
+    @Benchmark
+    public Order createOrderEntity() {
+        return newOrder(request);
+    }
+
+    // Legacy reflective mapping vs the codec is compared in OrderCodecBenchmark
+    @Benchmark
+    public int encodeOrderToBson() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        orderCodec.encode(new BsonBinaryWriter(buffer), order, EncoderContext.builder().build());
+        return buffer.getPosition();
+    }
+
+    @Benchmark
+    public CreateOrderResponse buildCreateOrderResponse() {
+        return CreateOrderResponse.newBuilder()
+                .setOrderId(order.getOrderId())
+                .setStatus("COMPLETED")
+                .build();
+    }
+
+    private static Order newOrder(CreateOrderRequest request) {
+        return new Order(
+                new ObjectId(),
+                request.getOrderId(),
+                request.getCustomerId(),
+                request.getCustomerPhoneNumber(),
+                "PROCESSING",
+                new ArrayList<>(request.getItemsList()),
+                OffsetDateTime.now()
+        );
+    }
+}
@@ -0,0 +1,74 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.config.ExecutionConfig;
+import com.lap.hacom.order.config.ExecutionSchedulers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the execution modes for blocking SMS submits against a slow SMSC, simulated as a
+ * blocking wait of {@code smscLatencyMs} per submit. Each invocation pushes a burst of submits
+ * through the scheduler: Throughput reports submits/s, SampleTime the burst drain time
+ * percentiles (p99 in the JMH output).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingSubmitBenchmark {
+
+    private static final int BURST = 512;
+
+    @Param({"PLATFORM", "BOUNDED_ELASTIC", "VIRTUAL"})
+    private ExecutionConfig.Mode mode;
+
+    @Param({"20"})
+    private long smscLatencyMs;
+
+    @Param({"4"})
+    private int threads;
+
+    private Scheduler scheduler;
+
+    @Setup
+    public void setUp() {
+        scheduler = ExecutionSchedulers.blockingScheduler(mode, "bench", threads, BURST);
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Long submitBurst() {
+        return Flux.range(0, BURST)
+                .flatMap(i -> Mono.fromCallable(this::slowSubmit).subscribeOn(scheduler), BURST)
+                .count()
+                .block();
+    }
+
+    private SmsSubmitResult slowSubmit() throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(smscLatencyMs);
+        return SmsSubmitResult.SENT;
+    }
+}
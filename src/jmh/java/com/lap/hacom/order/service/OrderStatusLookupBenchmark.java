@@ -0,0 +1,137 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.codec.ItemDictionary;
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.config.JournalConfig;
+import com.lap.hacom.order.journal.OrderJournal;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.repository.OrderRepository;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the order status lookup behind {@code GET /api/orders/{orderId}/status} against a
+ * real mongod, straight through the repository ({@code cache=off}) and through
+ * {@link OrderStatusCache} ({@code cache=on}). Clients poll the same orders repeatedly, so
+ * lookups pick from {@code orders} known orderIds, {@code unknownPercent} of them for orders
+ * that don't exist. SampleTime reports the percentiles; compare p0.99 between the two.
+ * Needs a running mongod, so it is excluded from the default jmh run:
+ * {@code ./gradlew jmh -PjmhIncludes=OrderStatusLookupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class OrderStatusLookupBenchmark {
+
+    @Param({"off", "on"})
+    public String cache;
+
+    @Param({"10000"})
+    public int orders;
+
+    @Param({"10"})
+    public int unknownPercent;
+
+    @Param({"mongodb://127.0.0.1:27017"})
+    public String mongoUri;
+
+    private MongoClient client;
+    private MongoCollection<Order> collection;
+    private OrderRepository orderRepository;
+    private OrderStatusCache orderStatusCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OrderCodec orderCodec = new OrderCodec(new ItemDictionary(List.of("Product A - Laptop")));
+        client = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongoUri))
+                .codecRegistry(CodecRegistries.fromRegistries(
+                        CodecRegistries.fromCodecs(orderCodec),
+                        MongoClientSettings.getDefaultCodecRegistry()))
+                .build());
+
+        collection = client.getDatabase("hacom-order-bench").getCollection("orders_status", Order.class);
+        Mono.from(collection.drop()).block();
+        Mono.from(collection.createIndex(new Document(OrderCodec.ORDER_ID, 1), new IndexOptions().unique(true))).block();
+        Flux.range(0, orders)
+                .map(OrderStatusLookupBenchmark::newOrder)
+                .buffer(1000)
+                .concatMap(batch -> Mono.from(collection.insertMany(batch)))
+                .blockLast();
+
+        // Only findByOrderId is used, and the same single-document lookup the repository runs
+        orderRepository = (OrderRepository) Proxy.newProxyInstance(OrderRepository.class.getClassLoader(),
+                new Class<?>[]{OrderRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findByOrderId")) {
+                        return Mono.from(collection.find(Filters.eq(OrderCodec.ORDER_ID, args[0])).first());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        // A journal that was never opened has nothing unreplayed, so every miss goes to Mongo
+        orderStatusCache = new OrderStatusCache(orderRepository, new OrderJournal(new JournalConfig()),
+                new SimpleMeterRegistry(), 100_000, 60_000, 1_000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Mono.from(collection.drop()).block();
+        client.close();
+    }
+
+    @Benchmark
+    public Order lookup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String orderId = random.nextInt(100) < unknownPercent
+                ? "missing-" + random.nextInt(orders)
+                : orderId(random.nextInt(orders));
+
+        return "on".equals(cache)
+                ? orderStatusCache.findByOrderId(orderId).block()
+                : orderRepository.findByOrderId(orderId).block();
+    }
+
+    private static Order newOrder(int n) {
+        return new Order(new ObjectId(), orderId(n), "CUST" + (n % 1000), "+5199900" + String.format("%04d", n % 10000),
+                "COMPLETED", List.of("Product A - Laptop"), OffsetDateTime.now());
+    }
+
+    private static String orderId(int n) {
+        return "order-" + n;
+    }
+}
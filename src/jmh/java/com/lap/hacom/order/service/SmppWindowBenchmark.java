@@ -0,0 +1,105 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.client.StubSmscServer;
+import com.lap.hacom.order.config.ExecutionConfig;
+import com.lap.hacom.order.config.SmppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SMS throughput of {@link SmppService} against an in-process {@link StubSmscServer} that
+ * answers every submit_sm after {@code smscLatencyMs}, as the window per session and the number
+ * of bound sessions vary. Throughput is reported in messages/s; with a window of 1 and one
+ * session it stays near 1/RTT, and it should grow with window x sessions until the client or
+ * the stub saturates. The rate limiter is set far above what the stub can answer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmppWindowBenchmark {
+
+    private static final int BURST = 1024;
+
+    @Param({"1", "10", "50"})
+    private int windowSize;
+
+    @Param({"1", "2", "4"})
+    private int sessionCount;
+
+    @Param({"5"})
+    private long smscLatencyMs;
+
+    private StubSmscServer smsc;
+    private SmppService smppService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        int port = freePort();
+        smsc = new StubSmscServer(port, smscLatencyMs);
+        smsc.start();
+
+        SmppConfig smppConfig = new SmppConfig();
+        smppConfig.setEnabled(true);
+        smppConfig.setHost("127.0.0.1");
+        smppConfig.setPort(port);
+        smppConfig.setSystemId("bench");
+        smppConfig.setPassword("bench");
+        smppConfig.setSystemType("");
+        smppConfig.setInterfaceVersion((byte) 0x34);
+        smppConfig.setSourceAddress("HACOM");
+        smppConfig.setWindowSize(windowSize);
+        smppConfig.setSessionCount(sessionCount);
+        smppConfig.setMaxTps(1_000_000);
+        smppConfig.setMaxBurst(BURST);
+        // Threads only block while waiting for a window slot, so one per slot keeps every window full
+        smppConfig.setNotificationThreads(windowSize * sessionCount);
+        smppConfig.setNotificationQueueCapacity(BURST);
+
+        smppService = new SmppService(smppConfig, new ExecutionConfig(), new SimpleMeterRegistry());
+        smppService.initialize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        smppService.destroy();
+        smsc.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Long submitBurst() {
+        return Flux.range(0, BURST)
+                .flatMap(i -> smppService.submitSms("+51999000000", "Your order bench-" + i + " has been processed"),
+                        BURST)
+                .filter(result -> result == SmsSubmitResult.SENT)
+                .count()
+                .block();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
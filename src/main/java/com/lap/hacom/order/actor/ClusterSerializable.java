@@ -0,0 +1,8 @@
+package com.lap.hacom.order.actor;
+
+/**
+ * Marks messages sent between cluster nodes; bound to Jackson CBOR serialization in
+ * {@link com.lap.hacom.order.config.AkkaConfig}.
+ */
+public interface ClusterSerializable {
+}
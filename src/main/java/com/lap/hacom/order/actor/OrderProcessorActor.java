@@ -3,38 +3,103 @@ package com.lap.hacom.order.actor;
 import akka.actor.AbstractActor;
 import akka.actor.Props;
 import com.lap.hacom.order.grpc.CreateOrderResponse;
+import com.lap.hacom.order.journal.OrderJournal;
+import com.lap.hacom.order.journal.OrderJournalCodec;
 import com.lap.hacom.order.model.Order;
-import com.lap.hacom.order.repository.OrderRepository;
-import com.lap.hacom.order.service.SmppService;
+import com.lap.hacom.order.model.OutboxMessage;
+import com.lap.hacom.order.service.OrderBatchWriter;
+import com.lap.hacom.order.service.OrderEventBus;
+import com.lap.hacom.order.service.OrderIdIndex;
+import com.lap.hacom.order.service.OrderStatusCache;
+import com.lap.hacom.order.service.SmsNotificationService;
+import io.grpc.Deadline;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Mono;
 
 import java.time.OffsetDateTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class OrderProcessorActor extends AbstractActor {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderProcessorActor.class);
+    private static final Logger summaryLogger = LoggerFactory.getLogger("com.lap.hacom.order.summary");
 
-    private final OrderRepository orderRepository;
-    private final SmppService smppService;
-    private final Counter orderCounter;
+    private static final int SAMPLE_BUCKETS = 10_000;
 
+    private final OrderBatchWriter orderBatchWriter;
+    private final SmsNotificationService smsNotificationService;
+    private final OrderStatusCache orderStatusCache;
+    private final OrderIdIndex orderIdIndex;
+    private final OrderEventBus orderEventBus;
+    private final OrderJournal orderJournal;
+    private final Counter orderCounter;
+    private final Counter duplicateCounter;
+    private final Counter expiredCounter;
+    private final Timer processingTimer;
+    private final Timer mailboxWaitTimer;
+    private final AtomicInteger mailboxDepth;
+    private final String shardId;
+    private final int summarySampleThreshold;
 
-    public static Props props(OrderRepository orderRepository, SmppService smppService, MeterRegistry meterRegistry) {
+    public static Props props(OrderBatchWriter orderBatchWriter, SmsNotificationService smsNotificationService,
+                              OrderStatusCache orderStatusCache, OrderIdIndex orderIdIndex,
+                              OrderEventBus orderEventBus, OrderJournal orderJournal, MeterRegistry meterRegistry,
+                              String shardId, AtomicInteger mailboxDepth, double summarySampleRate) {
         return Props.create(OrderProcessorActor.class,
-                () -> new OrderProcessorActor(orderRepository, smppService, meterRegistry));
+                () -> new OrderProcessorActor(orderBatchWriter, smsNotificationService, orderStatusCache,
+                        orderIdIndex, orderEventBus, orderJournal, meterRegistry, shardId, mailboxDepth,
+                        summarySampleRate));
     }
 
-    public OrderProcessorActor(OrderRepository orderRepository, SmppService smppService, MeterRegistry meterRegistry) {
-        this.orderRepository = orderRepository;
-        this.smppService = smppService;
+    public OrderProcessorActor(OrderBatchWriter orderBatchWriter, SmsNotificationService smsNotificationService,
+                               OrderStatusCache orderStatusCache, OrderIdIndex orderIdIndex,
+                               OrderEventBus orderEventBus, OrderJournal orderJournal, MeterRegistry meterRegistry,
+                               String shardId, AtomicInteger mailboxDepth, double summarySampleRate) {
+        this.orderBatchWriter = orderBatchWriter;
+        this.smsNotificationService = smsNotificationService;
+        this.orderStatusCache = orderStatusCache;
+        this.orderIdIndex = orderIdIndex;
+        this.orderEventBus = orderEventBus;
+        this.orderJournal = orderJournal;
+        this.mailboxDepth = mailboxDepth;
+        this.shardId = shardId;
+        this.summarySampleThreshold = (int) Math.round(summarySampleRate * SAMPLE_BUCKETS);
         this.orderCounter = Counter.builder("hacom.orders.processed.total")
                 .description("Total number of orders processed")
                 .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("hacom.orders.duplicates.total")
+                .description("Create requests for an orderId that already exists")
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("hacom.grpc.shed.total")
+                .description("Order requests rejected or dropped by admission control")
+                .tag("reason", "expired_in_queue")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("hacom.orders.shard.processing.time")
+                .description("Time from dequeuing an order until its response is sent")
+                .tag("shard", shardId)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+        this.mailboxWaitTimer = Timer.builder("hacom.orders.shard.mailbox.wait")
+                .description("Time an order spends in the shard mailbox before processing starts")
+                .tag("shard", shardId)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
     }
 
     public static class ProcessOrderMessage {
@@ -42,22 +107,32 @@ public class OrderProcessorActor extends AbstractActor {
         private final String customerId;
         private final String customerPhoneNumber;
         private final List<String> items;
+        private final boolean waitForNotification;
+        private final Deadline deadline;
         private final StreamObserver<CreateOrderResponse> responseObserver;
+        private final long enqueuedAtNanos;
 
         public ProcessOrderMessage(String orderId, String customerId, String customerPhoneNumber,
-                                   List<String> items, StreamObserver<CreateOrderResponse> responseObserver) {
+                                   List<String> items, boolean waitForNotification, Deadline deadline,
+                                   StreamObserver<CreateOrderResponse> responseObserver) {
             this.orderId = orderId;
             this.customerId = customerId;
             this.customerPhoneNumber = customerPhoneNumber;
             this.items = items;
+            this.waitForNotification = waitForNotification;
+            this.deadline = deadline;
             this.responseObserver = responseObserver;
+            this.enqueuedAtNanos = System.nanoTime();
         }
 
         public String getOrderId() { return orderId; }
         public String getCustomerId() { return customerId; }
         public String getCustomerPhoneNumber() { return customerPhoneNumber; }
         public List<String> getItems() { return items; }
+        public boolean isWaitForNotification() { return waitForNotification; }
+        public Deadline getDeadline() { return deadline; }
         public StreamObserver<CreateOrderResponse> getResponseObserver() { return responseObserver; }
+        public long getEnqueuedAtNanos() { return enqueuedAtNanos; }
     }
 
     @Override
@@ -68,69 +143,169 @@ public class OrderProcessorActor extends AbstractActor {
     }
 
     private void processOrder(ProcessOrderMessage message) {
-        logger.info("Starting order processing for order ID: {}", message.getOrderId());
+        mailboxDepth.decrementAndGet();
+        Timer.Sample processingSample = Timer.start();
+        long startNanos = System.nanoTime();
+        mailboxWaitTimer.record(startNanos - message.getEnqueuedAtNanos(), TimeUnit.NANOSECONDS);
+
+        logger.debug("Starting order processing for order ID: {}", message.getOrderId());
+
+        // The caller has given up while the order sat in the mailbox; don't spend work on it
+        if (message.getDeadline() != null && message.getDeadline().isExpired()) {
+            expiredCounter.increment();
+            processingSample.stop(processingTimer);
+            message.getResponseObserver().onError(Status.DEADLINE_EXCEEDED
+                    .withDescription("Deadline expired before processing started")
+                    .asRuntimeException());
+            return;
+        }
 
         try {
-            // Create order entity with initial processing status
-            Order order = new Order(
-                    null,
-                    message.getOrderId(),
-                    message.getCustomerId(),
-                    message.getCustomerPhoneNumber(),
-                    "PROCESSING",
-                    message.getItems(),
-                    OffsetDateTime.now()
-            );
-
-            logger.debug("Created order entity: {}", order);
-
-            // Save order to MongoDB
-            orderRepository.save(order)
-                    .doOnSuccess(savedOrder -> {
-                        logger.info("Order saved successfully to MongoDB: {}", savedOrder.getOrderId());
-
-                        // Update order status to completed
-                        savedOrder.setStatus("COMPLETED");
-
-                        // Save updated status
-                        orderRepository.save(savedOrder)
-                                .doOnSuccess(completedOrder -> {
-                                    logger.info("Order status updated to COMPLETED: {}", completedOrder.getOrderId());
-
-                                    // Send SMS notification
-                                    String smsMessage = "Your order " + completedOrder.getOrderId() + " has been processed";
-                                    boolean smsSent = smppService.sendSms(completedOrder.getCustomerPhoneNumber(), smsMessage);
-
-                                    if (smsSent) {
-                                        logger.info("SMS notification sent successfully for order: {}", completedOrder.getOrderId());
-                                    } else {
-                                        logger.warn("Failed to send SMS notification for order: {}", completedOrder.getOrderId());
-                                    }
-
-                                    // Increment metrics counter
-                                    orderCounter.increment();
-
-                                    // Send successful gRPC response
-                                    sendSuccessResponse(message.getResponseObserver(), completedOrder.getOrderId(), "COMPLETED");
-                                })
-                                .doOnError(error -> {
-                                    logger.error("Error updating order status for {}: {}", savedOrder.getOrderId(), error.getMessage(), error);
-                                    sendErrorResponse(message.getResponseObserver(), message.getOrderId(), "FAILED");
-                                })
-                                .subscribe();
+            // Client retries reuse the orderId; answer them with the stored status instead of writing again
+            orderIdIndex.isKnown(message.getOrderId())
+                    .flatMap(known -> known ? existingOrder(message) : createOrder(message))
+                    .onErrorResume(DuplicateKeyException.class, duplicate -> existingOrder(message))
+                    .doOnSuccess(outcome -> {
+                        sendSuccessResponse(message.getResponseObserver(), message.getOrderId(), outcome.status());
+                        logSummary(message, outcome, startNanos);
                     })
                     .doOnError(error -> {
                         logger.error("Error saving order to MongoDB for {}: {}", message.getOrderId(), error.getMessage(), error);
                         sendErrorResponse(message.getResponseObserver(), message.getOrderId(), "FAILED");
+                        logSummary(message, new Outcome("FAILED", "NONE", false), startNanos);
                     })
+                    .doFinally(signal -> processingSample.stop(processingTimer))
                     .subscribe();
 
         } catch (Exception e) {
             logger.error("Unexpected error processing order {}: {}", message.getOrderId(), e.getMessage(), e);
+            processingSample.stop(processingTimer);
             sendErrorResponse(message.getResponseObserver(), message.getOrderId(), "FAILED");
         }
     }
 
+    private Mono<Outcome> createOrder(ProcessOrderMessage message) {
+        // Create order entity with initial processing status
+        Order order = new Order(
+                null,
+                message.getOrderId(),
+                message.getCustomerId(),
+                message.getCustomerPhoneNumber(),
+                "PROCESSING",
+                message.getItems(),
+                OffsetDateTime.now()
+        );
+
+        logger.debug("Created order entity: {}", order);
+
+        // Marked before the write so a retry arriving meanwhile is already recognised
+        orderIdIndex.markCreated(order.getOrderId());
+
+        // Unless the caller waits for the SMS, it goes through the outbox written with the order,
+        // so a crash after the save can't lose it and a slow SMSC can't hold up the pipeline
+        OutboxMessage outbox = message.isWaitForNotification() ? null : outboxFor(order);
+
+        if (outbox != null && orderJournal.isEnabled()) {
+            return journalOrder(order);
+        }
+
+        // Queue the insert and fold the COMPLETED status into the same batched write;
+        // if the batch was already flushed the status goes out as a separate update
+        Mono<Order> persisted = orderBatchWriter.insert(order, outbox);
+        Mono<Order> completed = orderBatchWriter.updateStatus(order.getOrderId(), "COMPLETED");
+
+        return persisted
+                .doOnSuccess(this::statusChanged)
+                .then(completed)
+                .switchIfEmpty(Mono.error(new IllegalStateException("Order not found when completing it")))
+                .flatMap(completedOrder -> {
+                    statusChanged(completedOrder);
+
+                    // Increment metrics counter
+                    orderCounter.increment();
+
+                    if (message.isWaitForNotification()) {
+                        return sendNotification(completedOrder)
+                                .map(smsSent -> new Outcome("COMPLETED", smsSent ? "SENT" : "DEFERRED", false));
+                    }
+                    return Mono.just(new Outcome("COMPLETED", "OUTBOX", false));
+                })
+                .doOnError(error -> {
+                    if (!(error instanceof DuplicateKeyException)) {
+                        orderIdIndex.forget(order.getOrderId());
+                    }
+                });
+    }
+
+    /**
+     * Acknowledges the order once it is durable in the local journal, already COMPLETED; the
+     * journal replayer writes it and its outbox entry to Mongo later. Until then status lookups
+     * on this node find it in the journal; other nodes only see it once it is replayed.
+     */
+    private Mono<Outcome> journalOrder(Order order) {
+        order.set_id(new ObjectId());
+        order.setStatus("COMPLETED");
+
+        return Mono.fromFuture(() -> orderJournal.append(order.getOrderId(), OrderJournalCodec.encode(order)))
+                .map(position -> {
+                    statusChanged(order);
+                    orderCounter.increment();
+                    return new Outcome("COMPLETED", "JOURNAL", false);
+                })
+                .doOnError(error -> orderIdIndex.forget(order.getOrderId()));
+    }
+
+    private void statusChanged(Order order) {
+        orderStatusCache.put(order);
+        orderEventBus.publish(order);
+    }
+
+    // An order known to exist but not readable yet is still in the write batch of the first attempt.
+    // A stored order may have lost its outbox entry with the first attempt, so it is written again
+    private Mono<Outcome> existingOrder(ProcessOrderMessage message) {
+        String orderId = message.getOrderId();
+        duplicateCounter.increment();
+        logger.debug("Order {} already exists, returning its current status", orderId);
+
+        return orderStatusCache.findByOrderId(orderId)
+                .flatMap(existing -> message.isWaitForNotification()
+                        ? Mono.just(new Outcome(existing.getStatus(), "NONE", true))
+                        : orderBatchWriter.writeOutbox(outboxFor(existing))
+                                .thenReturn(new Outcome(existing.getStatus(), "OUTBOX", true)))
+                .defaultIfEmpty(new Outcome("PROCESSING", "NONE", true));
+    }
+
+    public static OutboxMessage outboxFor(Order order) {
+        Instant now = Instant.now();
+        return new OutboxMessage(order.getOrderId(), order.getCustomerPhoneNumber(),
+                notificationText(order.getOrderId()), now, now, null, null);
+    }
+
+    public static String notificationText(String orderId) {
+        return "Your order " + orderId + " has been processed";
+    }
+
+    private Mono<Boolean> sendNotification(Order order) {
+        return smsNotificationService.send(order.getCustomerPhoneNumber(), notificationText(order.getOrderId()))
+                .doOnNext(smsSent -> logger.debug("SMS notification for order {} sent: {}", order.getOrderId(), smsSent));
+    }
+
+    /**
+     * One structured line per sampled order instead of a line per processing step. Sampling is
+     * keyed on the orderId so an order is either fully traced or not at all; enabling DEBUG on
+     * the summary logger logs every order.
+     */
+    private void logSummary(ProcessOrderMessage message, Outcome outcome, long startNanos) {
+        boolean sampled = Math.floorMod(message.getOrderId().hashCode(), SAMPLE_BUCKETS) < summarySampleThreshold;
+        if (!sampled && !summaryLogger.isDebugEnabled()) {
+            return;
+        }
+
+        summaryLogger.info("order_summary orderId={} customerId={} shard={} status={} duplicate={} items={} notification={} elapsedMicros={}",
+                message.getOrderId(), message.getCustomerId(), shardId, outcome.status(), outcome.duplicate(),
+                message.getItems().size(), outcome.notification(), (System.nanoTime() - startNanos) / 1_000);
+    }
+
     private void sendSuccessResponse(StreamObserver<CreateOrderResponse> responseObserver, String orderId, String status) {
         CreateOrderResponse response = CreateOrderResponse.newBuilder()
                 .setOrderId(orderId)
@@ -140,7 +315,7 @@ public class OrderProcessorActor extends AbstractActor {
         responseObserver.onNext(response);
         responseObserver.onCompleted();
 
-        logger.info("Sent successful gRPC response for order: {}", orderId);
+        logger.debug("Sent successful gRPC response for order: {}", orderId);
     }
 
     private void sendErrorResponse(StreamObserver<CreateOrderResponse> responseObserver, String orderId, String status) {
@@ -154,4 +329,7 @@ public class OrderProcessorActor extends AbstractActor {
 
         logger.error("Sent error gRPC response for order: {}", orderId);
     }
-}
\ No newline at end of file
+
+    private record Outcome(String status, String notification, boolean duplicate) {
+    }
+}
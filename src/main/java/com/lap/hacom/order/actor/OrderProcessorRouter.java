@@ -0,0 +1,256 @@
+package com.lap.hacom.order.actor;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.actor.DeadLetter;
+import akka.actor.Props;
+import akka.cluster.sharding.ClusterSharding;
+import akka.cluster.sharding.ClusterShardingSettings;
+import akka.cluster.sharding.ShardRegion;
+import com.lap.hacom.order.config.AkkaConfig;
+import com.lap.hacom.order.config.ClusterConfig;
+import com.lap.hacom.order.grpc.CreateOrderResponse;
+import com.lap.hacom.order.journal.OrderJournal;
+import com.lap.hacom.order.service.OrderBatchWriter;
+import com.lap.hacom.order.service.OrderEventBus;
+import com.lap.hacom.order.service.OrderIdIndex;
+import com.lap.hacom.order.service.OrderStatusCache;
+import com.lap.hacom.order.service.SmsNotificationService;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads orders over a fixed pool of {@link OrderProcessorActor} shards. Orders are routed
+ * by customerId so each customer's orders are still processed in sequence. Shard mailboxes are
+ * bounded; an order for a full shard is refused instead of queued.
+ *
+ * With {@code orders.cluster.enabled} the shards are Cluster Sharding entities spread over all
+ * nodes, rebalanced as nodes join and leave. Any node routes to the owning shard and keeps the
+ * gRPC call until that shard's answer comes back to its {@link OrderReplyListener}.
+ */
+@Component
+public class OrderProcessorRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderProcessorRouter.class);
+
+    private static final String SHARD_TYPE_NAME = "OrderProcessor";
+
+    private final ActorRef[] shards;
+    private final AtomicInteger[] mailboxDepths;
+    private final int mailboxCapacity;
+
+    // Clustered mode only
+    private ActorRef shardRegion;
+    private ActorRef replyListener;
+    private Cancellable replyTimeoutSweep;
+    private int clusterShardCount;
+    private long replyTimeoutNanos;
+    private final Map<Long, PendingReply> pendingReplies = new ConcurrentHashMap<>();
+    private final AtomicLong correlationIds = new AtomicLong();
+
+    private record PendingReply(StreamObserver<CreateOrderResponse> observer, long expiresAtNanos) {
+    }
+
+    @Autowired
+    public OrderProcessorRouter(ActorSystem actorSystem, OrderBatchWriter orderBatchWriter,
+                                SmsNotificationService smsNotificationService, OrderStatusCache orderStatusCache,
+                                OrderIdIndex orderIdIndex, OrderEventBus orderEventBus, OrderJournal orderJournal,
+                                ClusterConfig clusterConfig, MeterRegistry meterRegistry,
+                                @Value("${orders.processor.shards:4}") int shardCount,
+                                @Value("${orders.processor.mailbox-capacity:10000}") int mailboxCapacity,
+                                @Value("${orders.logging.summary-sample-rate:0.01}") double summarySampleRate) {
+        this.mailboxCapacity = mailboxCapacity;
+
+        if (clusterConfig.isEnabled()) {
+            this.shards = new ActorRef[0];
+            this.mailboxDepths = new AtomicInteger[0];
+            startSharding(actorSystem, clusterConfig,
+                    OrderShardEntity.props(orderBatchWriter, smsNotificationService, orderStatusCache, orderIdIndex,
+                            orderEventBus, orderJournal, meterRegistry, mailboxCapacity, summarySampleRate));
+            return;
+        }
+
+        this.shards = new ActorRef[shardCount];
+        this.mailboxDepths = new AtomicInteger[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            String shardId = String.valueOf(i);
+            AtomicInteger mailboxDepth = new AtomicInteger();
+
+            Gauge.builder("hacom.orders.shard.mailbox.depth", mailboxDepth, AtomicInteger::get)
+                    .description("Messages waiting in the order processor shard mailbox")
+                    .tag("shard", shardId)
+                    .register(meterRegistry);
+
+            mailboxDepths[i] = mailboxDepth;
+            shards[i] = actorSystem.actorOf(
+                    OrderProcessorActor.props(orderBatchWriter, smsNotificationService, orderStatusCache,
+                                    orderIdIndex, orderEventBus, orderJournal, meterRegistry, shardId, mailboxDepth,
+                                    summarySampleRate)
+                            .withDispatcher(AkkaConfig.ORDER_PROCESSOR_DISPATCHER)
+                            .withMailbox(AkkaConfig.ORDER_PROCESSOR_MAILBOX),
+                    "order-processor-actor-" + shardId
+            );
+        }
+
+        ActorRef undeliveredListener = actorSystem.actorOf(
+                UndeliveredOrderListener.props(this::onUndelivered), "undelivered-order-listener");
+        actorSystem.getEventStream().subscribe(undeliveredListener, DeadLetter.class);
+
+        logger.info("Order processor router initialized with {} shards, mailbox capacity {}", shardCount, mailboxCapacity);
+    }
+
+    private void startSharding(ActorSystem actorSystem, ClusterConfig clusterConfig, Props entityProps) {
+        this.clusterShardCount = clusterConfig.getNumberOfShards();
+        this.replyTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(clusterConfig.getReplyTimeoutMs());
+
+        // Every node hosts shards; the coordinator moves them to new nodes and off leaving ones
+        shardRegion = ClusterSharding.get(actorSystem).start(SHARD_TYPE_NAME, entityProps,
+                ClusterShardingSettings.create(actorSystem), new ShardedOrderExtractor());
+        replyListener = actorSystem.actorOf(
+                OrderReplyListener.props(this::onReply, this::onFailure), "order-reply-listener");
+
+        // Orders lost with a crashed node, or still buffered while their shard moves, get no
+        // answer; fail them so the caller can retry
+        replyTimeoutSweep = actorSystem.scheduler().scheduleWithFixedDelay(
+                Duration.ofSeconds(1), Duration.ofSeconds(1), this::expirePendingReplies, actorSystem.dispatcher());
+
+        logger.info("Order processor router initialized in clustered mode with {} shards, mailbox capacity {}",
+                clusterShardCount, mailboxCapacity);
+    }
+
+    /**
+     * Hands the order to its customer's shard. Returns false without queueing it if that
+     * shard's mailbox is full.
+     */
+    public boolean route(OrderProcessorActor.ProcessOrderMessage message) {
+        if (shardRegion != null) {
+            routeToCluster(message);
+            return true;
+        }
+
+        int shard = shardFor(message.getCustomerId());
+        if (mailboxDepths[shard].incrementAndGet() > mailboxCapacity) {
+            mailboxDepths[shard].decrementAndGet();
+            return false;
+        }
+        shards[shard].tell(message, ActorRef.noSender());
+        return true;
+    }
+
+    private void onUndelivered(DeadLetter deadLetter) {
+        OrderProcessorActor.ProcessOrderMessage message = (OrderProcessorActor.ProcessOrderMessage) deadLetter.message();
+        logger.warn("Order {} was not delivered to {}", message.getOrderId(), deadLetter.recipient().path().name());
+
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i].equals(deadLetter.recipient())) {
+                mailboxDepths[i].decrementAndGet();
+            }
+        }
+
+        message.getResponseObserver().onError(Status.RESOURCE_EXHAUSTED
+                .withDescription("Order processor unavailable")
+                .asRuntimeException());
+    }
+
+    private int shardFor(String customerId) {
+        return Math.floorMod(customerId.hashCode(), shards.length);
+    }
+
+    // A full shard on another node answers RESOURCE_EXHAUSTED through the reply instead
+    private void routeToCluster(OrderProcessorActor.ProcessOrderMessage message) {
+        long correlationId = correlationIds.incrementAndGet();
+        pendingReplies.put(correlationId,
+                new PendingReply(message.getResponseObserver(), System.nanoTime() + replyTimeoutNanos));
+
+        Long deadlineRemainingNanos = message.getDeadline() == null
+                ? null
+                : message.getDeadline().timeRemaining(TimeUnit.NANOSECONDS);
+        String shardId = String.valueOf(Math.floorMod(message.getCustomerId().hashCode(), clusterShardCount));
+
+        shardRegion.tell(new OrderShardEntity.ShardedOrder(shardId, message.getOrderId(), message.getCustomerId(),
+                message.getCustomerPhoneNumber(), message.getItems(), message.isWaitForNotification(),
+                deadlineRemainingNanos, correlationId, replyListener), ActorRef.noSender());
+    }
+
+    private void onReply(ReplyingObserver.OrderReply reply) {
+        PendingReply pending = pendingReplies.remove(reply.correlationId());
+        if (pending == null) {
+            logger.debug("Late reply for order {}, caller already answered", reply.orderId());
+            return;
+        }
+        pending.observer().onNext(CreateOrderResponse.newBuilder()
+                .setOrderId(reply.orderId())
+                .setStatus(reply.status())
+                .build());
+        pending.observer().onCompleted();
+    }
+
+    private void onFailure(ReplyingObserver.OrderFailure failure) {
+        PendingReply pending = pendingReplies.remove(failure.correlationId());
+        if (pending != null) {
+            pending.observer().onError(Status.fromCode(Status.Code.valueOf(failure.code()))
+                    .withDescription(failure.description())
+                    .asRuntimeException());
+        }
+    }
+
+    private void expirePendingReplies() {
+        long now = System.nanoTime();
+        pendingReplies.forEach((correlationId, pending) -> {
+            if (now - pending.expiresAtNanos() > 0 && pendingReplies.remove(correlationId, pending)) {
+                pending.observer().onError(Status.UNAVAILABLE
+                        .withDescription("No answer from the order's processor shard")
+                        .asRuntimeException());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (replyTimeoutSweep != null) {
+            replyTimeoutSweep.cancel();
+        }
+    }
+
+    // Shard and entity are the same: one OrderShardEntity per shard, picked by the router
+    private static final class ShardedOrderExtractor implements ShardRegion.MessageExtractor {
+
+        @Override
+        public String entityId(Object message) {
+            return message instanceof OrderShardEntity.ShardedOrder order ? order.shardId() : null;
+        }
+
+        @Override
+        public Object entityMessage(Object message) {
+            return message;
+        }
+
+        @Override
+        public String shardId(Object message) {
+            if (message instanceof OrderShardEntity.ShardedOrder order) {
+                return order.shardId();
+            }
+            if (message instanceof ShardRegion.StartEntity start) {
+                return start.entityId();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.lap.hacom.order.actor;
+
+import akka.actor.AbstractActor;
+import akka.actor.Props;
+
+import java.util.function.Consumer;
+
+/**
+ * Receives the results of orders this node routed to a shard, wherever in the cluster that shard
+ * runs, and hands them to the router to answer the waiting gRPC calls.
+ */
+public class OrderReplyListener extends AbstractActor {
+
+    private final Consumer<ReplyingObserver.OrderReply> replyHandler;
+    private final Consumer<ReplyingObserver.OrderFailure> failureHandler;
+
+    public static Props props(Consumer<ReplyingObserver.OrderReply> replyHandler,
+                              Consumer<ReplyingObserver.OrderFailure> failureHandler) {
+        return Props.create(OrderReplyListener.class, () -> new OrderReplyListener(replyHandler, failureHandler));
+    }
+
+    public OrderReplyListener(Consumer<ReplyingObserver.OrderReply> replyHandler,
+                              Consumer<ReplyingObserver.OrderFailure> failureHandler) {
+        this.replyHandler = replyHandler;
+        this.failureHandler = failureHandler;
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(ReplyingObserver.OrderReply.class, replyHandler::accept)
+                .match(ReplyingObserver.OrderFailure.class, failureHandler::accept)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.lap.hacom.order.actor;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import com.lap.hacom.order.config.AkkaConfig;
+import com.lap.hacom.order.journal.OrderJournal;
+import com.lap.hacom.order.service.OrderBatchWriter;
+import com.lap.hacom.order.service.OrderEventBus;
+import com.lap.hacom.order.service.OrderIdIndex;
+import com.lap.hacom.order.service.OrderStatusCache;
+import com.lap.hacom.order.service.SmsNotificationService;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cluster Sharding entity for one order processing shard. It runs on whichever node currently
+ * owns the shard and feeds a local {@link OrderProcessorActor}, so customer ordering and the
+ * bounded mailbox work as in local mode.
+ */
+public class OrderShardEntity extends AbstractActor {
+
+    /**
+     * An order on its way to the shard that owns its customer. The deadline travels as the time
+     * left, since deadlines are not comparable across JVMs.
+     */
+    public record ShardedOrder(String shardId, String orderId, String customerId, String customerPhoneNumber,
+                               List<String> items, boolean waitForNotification, Long deadlineRemainingNanos,
+                               long correlationId, ActorRef replyTo) implements ClusterSerializable {
+
+        OrderProcessorActor.ProcessOrderMessage toProcessOrderMessage() {
+            Deadline deadline = deadlineRemainingNanos == null
+                    ? null
+                    : Deadline.after(deadlineRemainingNanos, TimeUnit.NANOSECONDS);
+            return new OrderProcessorActor.ProcessOrderMessage(orderId, customerId, customerPhoneNumber, items,
+                    waitForNotification, deadline, new ReplyingObserver(correlationId, replyTo));
+        }
+    }
+
+    private final OrderBatchWriter orderBatchWriter;
+    private final SmsNotificationService smsNotificationService;
+    private final OrderStatusCache orderStatusCache;
+    private final OrderIdIndex orderIdIndex;
+    private final OrderEventBus orderEventBus;
+    private final OrderJournal orderJournal;
+    private final MeterRegistry meterRegistry;
+    private final int mailboxCapacity;
+    private final double summarySampleRate;
+
+    private final AtomicInteger mailboxDepth = new AtomicInteger();
+    private ActorRef processor;
+    private Gauge mailboxGauge;
+
+    public static Props props(OrderBatchWriter orderBatchWriter, SmsNotificationService smsNotificationService,
+                              OrderStatusCache orderStatusCache, OrderIdIndex orderIdIndex,
+                              OrderEventBus orderEventBus, OrderJournal orderJournal, MeterRegistry meterRegistry,
+                              int mailboxCapacity, double summarySampleRate) {
+        return Props.create(OrderShardEntity.class,
+                () -> new OrderShardEntity(orderBatchWriter, smsNotificationService, orderStatusCache,
+                        orderIdIndex, orderEventBus, orderJournal, meterRegistry, mailboxCapacity,
+                        summarySampleRate));
+    }
+
+    public OrderShardEntity(OrderBatchWriter orderBatchWriter, SmsNotificationService smsNotificationService,
+                            OrderStatusCache orderStatusCache, OrderIdIndex orderIdIndex,
+                            OrderEventBus orderEventBus, OrderJournal orderJournal, MeterRegistry meterRegistry,
+                            int mailboxCapacity, double summarySampleRate) {
+        this.orderBatchWriter = orderBatchWriter;
+        this.smsNotificationService = smsNotificationService;
+        this.orderStatusCache = orderStatusCache;
+        this.orderIdIndex = orderIdIndex;
+        this.orderEventBus = orderEventBus;
+        this.orderJournal = orderJournal;
+        this.meterRegistry = meterRegistry;
+        this.mailboxCapacity = mailboxCapacity;
+        this.summarySampleRate = summarySampleRate;
+    }
+
+    @Override
+    public void preStart() {
+        // The entity id is the shard id
+        String shardId = getSelf().path().name();
+
+        mailboxGauge = Gauge.builder("hacom.orders.shard.mailbox.depth", mailboxDepth, AtomicInteger::get)
+                .description("Messages waiting in the order processor shard mailbox")
+                .tag("shard", shardId)
+                .register(meterRegistry);
+
+        processor = getContext().actorOf(
+                OrderProcessorActor.props(orderBatchWriter, smsNotificationService, orderStatusCache,
+                                orderIdIndex, orderEventBus, orderJournal, meterRegistry, shardId, mailboxDepth,
+                                summarySampleRate)
+                        .withDispatcher(AkkaConfig.ORDER_PROCESSOR_DISPATCHER)
+                        .withMailbox(AkkaConfig.ORDER_PROCESSOR_MAILBOX),
+                "order-processor");
+    }
+
+    // The shard may come back to this node after a rebalance; the new entity registers a fresh gauge
+    @Override
+    public void postStop() {
+        if (mailboxGauge != null) {
+            meterRegistry.remove(mailboxGauge);
+        }
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(ShardedOrder.class, this::forward)
+                .build();
+    }
+
+    private void forward(ShardedOrder order) {
+        OrderProcessorActor.ProcessOrderMessage message = order.toProcessOrderMessage();
+        if (mailboxDepth.incrementAndGet() > mailboxCapacity) {
+            mailboxDepth.decrementAndGet();
+            message.getResponseObserver().onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Order processor shard is full, retry later")
+                    .asRuntimeException());
+            return;
+        }
+        processor.tell(message, getSelf());
+    }
+}
@@ -0,0 +1,46 @@
+package com.lap.hacom.order.actor;
+
+import akka.actor.ActorRef;
+import com.lap.hacom.order.grpc.CreateOrderResponse;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Response observer for an order that arrived from another node. The gRPC call lives on the
+ * node that received it, so the result is sent back there as a message and completed by
+ * {@link OrderReplyListener}.
+ */
+class ReplyingObserver implements StreamObserver<CreateOrderResponse> {
+
+    record OrderReply(long correlationId, String orderId, String status) implements ClusterSerializable {
+    }
+
+    record OrderFailure(long correlationId, String code, String description) implements ClusterSerializable {
+    }
+
+    private final long correlationId;
+    private final ActorRef replyTo;
+    private CreateOrderResponse response;
+
+    ReplyingObserver(long correlationId, ActorRef replyTo) {
+        this.correlationId = correlationId;
+        this.replyTo = replyTo;
+    }
+
+    @Override
+    public void onNext(CreateOrderResponse response) {
+        this.response = response;
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        Status status = Status.fromThrowable(t);
+        replyTo.tell(new OrderFailure(correlationId, status.getCode().name(), status.getDescription()),
+                ActorRef.noSender());
+    }
+
+    @Override
+    public void onCompleted() {
+        replyTo.tell(new OrderReply(correlationId, response.getOrderId(), response.getStatus()), ActorRef.noSender());
+    }
+}
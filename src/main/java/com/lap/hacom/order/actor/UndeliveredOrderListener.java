@@ -0,0 +1,32 @@
+package com.lap.hacom.order.actor;
+
+import akka.actor.AbstractActor;
+import akka.actor.DeadLetter;
+import akka.actor.Props;
+
+import java.util.function.Consumer;
+
+/**
+ * Receives dead letters from the event stream and hands orders that never reached their shard
+ * (a full bounded mailbox, or a stopped shard) back to the router, so the caller gets an answer.
+ */
+public class UndeliveredOrderListener extends AbstractActor {
+
+    private final Consumer<DeadLetter> undeliveredOrderHandler;
+
+    public static Props props(Consumer<DeadLetter> undeliveredOrderHandler) {
+        return Props.create(UndeliveredOrderListener.class, () -> new UndeliveredOrderListener(undeliveredOrderHandler));
+    }
+
+    public UndeliveredOrderListener(Consumer<DeadLetter> undeliveredOrderHandler) {
+        this.undeliveredOrderHandler = undeliveredOrderHandler;
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(DeadLetter.class, deadLetter -> deadLetter.message() instanceof OrderProcessorActor.ProcessOrderMessage,
+                        undeliveredOrderHandler::accept)
+                .build();
+    }
+}
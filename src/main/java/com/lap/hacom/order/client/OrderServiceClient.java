@@ -5,71 +5,392 @@ import com.lap.hacom.order.grpc.CreateOrderResponse;
 import com.lap.hacom.order.grpc.OrderServiceGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
-
+/**
+ * gRPC load generator for the order service.
+ *
+ * <ul>
+ *   <li>{@code --mode=open --rate=2000}: fixed arrival rate. Latency is measured from each request's
+ *   intended start time, so a stalled server shows up in the percentiles instead of silently lowering
+ *   the offered load (coordinated omission).</li>
+ *   <li>{@code --mode=closed --concurrency=64}: N requests always in flight.</li>
+ * </ul>
+ *
+ * Other options: {@code --host}, {@code --port}, {@code --channels}, {@code --duration} and
+ * {@code --warmup} (seconds), {@code --rpc=unary|stream}, {@code --maxOutstanding}. For a run without
+ * network dependencies start {@link StubSmscServer} and point the service at a local mongod.
+ * {@code --targets=host:port,host:port} spreads the channels over several nodes of a cluster.
+ */
 public class OrderServiceClient {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderServiceClient.class);
 
+    private static final long HIGHEST_TRACKABLE_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<OrderSender> senders = new ArrayList<>();
+    private final AtomicInteger nextSender = new AtomicInteger();
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong orderSequence = new AtomicLong();
+
+    private volatile boolean recording;
+
     public static void main(String[] args) throws InterruptedException {
-        logger.info("Starting Order Service gRPC client test");
+        Map<String, String> options = parseOptions(args);
 
-        // Create gRPC channel
-        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", 9090)
-                .usePlaintext()
-                .build();
+        String host = options.getOrDefault("host", "localhost");
+        int port = Integer.parseInt(options.getOrDefault("port", "9090"));
+        List<String> targets = List.of(options.getOrDefault("targets", host + ":" + port).split(","));
+        int channelCount = Integer.parseInt(options.getOrDefault("channels", "4"));
+        String mode = options.getOrDefault("mode", "closed");
+        String rpc = options.getOrDefault("rpc", "unary");
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "5"));
+
+        logger.info("Starting order load generator: {} loop, {} RPC, {} channels to {}",
+                mode, rpc, channelCount, targets);
 
+        OrderServiceClient client = new OrderServiceClient(targets, channelCount, "stream".equals(rpc));
         try {
-            // Create blocking stub
-            OrderServiceGrpc.OrderServiceBlockingStub stub = OrderServiceGrpc.newBlockingStub(channel);
+            if ("open".equals(mode)) {
+                double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+                int maxOutstanding = Integer.parseInt(options.getOrDefault("maxOutstanding", "10000"));
+                client.runOpenLoop(rate, maxOutstanding, warmupSeconds, durationSeconds);
+            } else {
+                int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+                client.runClosedLoop(concurrency, warmupSeconds, durationSeconds);
+            }
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private OrderServiceClient(List<String> targets, int channelCount, boolean streaming) {
+        for (int i = 0; i < channelCount; i++) {
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(targets.get(i % targets.size()).trim())
+                    .usePlaintext()
+                    .build();
+            channels.add(channel);
+
+            OrderServiceGrpc.OrderServiceStub stub = OrderServiceGrpc.newStub(channel);
+            senders.add(streaming ? new StreamingSender(stub) : new UnarySender(stub));
+        }
+    }
+
+    private void runOpenLoop(double rate, int maxOutstanding, long warmupSeconds, long durationSeconds) {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        Semaphore outstanding = new Semaphore(maxOutstanding);
+
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        logger.info("Open loop at {} orders/s ({} ns between arrivals), at most {} outstanding",
+                rate, intervalNanos, maxOutstanding);
 
-            // Test multiple orders
-            for (int i = 1; i <= 3; i++) {
-                testOrderCreation(stub, i);
-                Thread.sleep(2000); // Wait between requests
+        for (long i = 0; ; i++) {
+            long intendedStart = start + i * intervalNanos;
+            if (intendedStart >= end) {
+                break;
             }
 
-        } finally {
-            // Shutdown channel
-            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
-            logger.info("gRPC client shutdown completed");
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+            if (!recording && now >= recordFrom) {
+                startRecording();
+            }
+
+            if (!outstanding.tryAcquire()) {
+                // Still counts against the schedule; the server is too far behind
+                if (recording) {
+                    failed.incrementAndGet();
+                }
+                continue;
+            }
+
+            send(intendedStart, outstanding::release);
         }
+
+        awaitOutstanding(outstanding, maxOutstanding);
+        report(TimeUnit.NANOSECONDS.toSeconds(end - recordFrom));
     }
 
-    private static void testOrderCreation(OrderServiceGrpc.OrderServiceBlockingStub stub, int orderNumber) {
-        String orderId = UUID.randomUUID().toString();
-        String customerId = "CUST" + String.format("%03d", orderNumber);
-        String phoneNumber = "+521234567" + String.format("%03d", orderNumber);
+    private void runClosedLoop(int concurrency, long warmupSeconds, long durationSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        CountDownLatch finished = new CountDownLatch(concurrency);
 
-        logger.info("Creating test order #{} with ID: {}", orderNumber, orderId);
+        logger.info("Closed loop with {} concurrent requests", concurrency);
 
-        // Create request
-        CreateOrderRequest request = CreateOrderRequest.newBuilder()
-                .setOrderId(orderId)
-                .setCustomerId(customerId)
-                .setCustomerPhoneNumber(phoneNumber)
-                .addAllItems(Arrays.asList(
-                        "Product A - Laptop",
-                        "Product B - Mouse",
-                        "Product C - Keyboard"
-                ))
-                .build();
+        for (int i = 0; i < concurrency; i++) {
+            sendNextClosed(end, finished);
+        }
 
+        while (System.nanoTime() < recordFrom) {
+            LockSupport.parkNanos(recordFrom - System.nanoTime());
+        }
+        startRecording();
+
+        finished.await();
+        report(TimeUnit.NANOSECONDS.toSeconds(end - recordFrom));
+    }
+
+    private void sendNextClosed(long end, CountDownLatch finished) {
+        long now = System.nanoTime();
+        if (now >= end) {
+            finished.countDown();
+            return;
+        }
+        send(now, () -> sendNextClosed(end, finished));
+    }
+
+    private void send(long startNanos, Runnable onDone) {
+        CreateOrderRequest request = newRequest();
+        OrderSender sender = senders.get(Math.floorMod(nextSender.getAndIncrement(), senders.size()));
+
+        sender.send(request, success -> {
+            if (recording) {
+                recorder.recordValue(Math.min(System.nanoTime() - startNanos, HIGHEST_TRACKABLE_LATENCY_NANOS));
+                (success ? completed : failed).incrementAndGet();
+            }
+            onDone.run();
+        });
+    }
+
+    private void startRecording() {
+        recorder.reset();
+        completed.set(0);
+        failed.set(0);
+        recording = true;
+        logger.info("Warmup finished, recording");
+    }
+
+    private void report(long durationSeconds) {
+        recording = false;
+        Histogram histogram = recorder.getIntervalHistogram();
+
+        logger.info("Completed: {}, failed: {}, throughput: {} orders/s",
+                completed.get(), failed.get(), completed.get() / Math.max(1, durationSeconds));
+        logger.info("Latency (ms) p50: {}, p90: {}, p99: {}, p99.9: {}, max: {}",
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1_000_000.0);
+    }
+
+    private static void awaitOutstanding(Semaphore outstanding, int maxOutstanding) {
         try {
-            // Make gRPC call
-            CreateOrderResponse response = stub.createOrder(request);
+            if (!outstanding.tryAcquire(maxOutstanding, 30, TimeUnit.SECONDS)) {
+                logger.warn("Timed out waiting for outstanding requests");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            logger.info("Order #{} Response - ID: {}, Status: {}",
-                    orderNumber, response.getOrderId(), response.getStatus());
+    private CreateOrderRequest newRequest() {
+        long sequence = orderSequence.incrementAndGet();
+        return CreateOrderRequest.newBuilder()
+                .setOrderId(UUID.randomUUID().toString())
+                .setCustomerId("CUST" + String.format("%03d", sequence % 1000))
+                .setCustomerPhoneNumber("+521234567" + String.format("%03d", sequence % 1000))
+                .addItems("Product A - Laptop")
+                .addItems("Product B - Mouse")
+                .addItems("Product C - Keyboard")
+                .build();
+    }
+
+    private void shutdown() throws InterruptedException {
+        senders.forEach(OrderSender::close);
+        for (ManagedChannel channel : channels) {
+            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        logger.info("gRPC client shutdown completed");
+    }
 
-        } catch (Exception e) {
-            logger.error("Error creating order #{}: {}", orderNumber, e.getMessage(), e);
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int separator = arg.indexOf('=');
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private interface ResultCallback {
+        void onResult(boolean success);
+    }
+
+    private interface OrderSender {
+        void send(CreateOrderRequest request, ResultCallback callback);
+
+        default void close() {
+        }
+    }
+
+    private static final class UnarySender implements OrderSender {
+
+        private final OrderServiceGrpc.OrderServiceStub stub;
+
+        private UnarySender(OrderServiceGrpc.OrderServiceStub stub) {
+            this.stub = stub;
+        }
+
+        @Override
+        public void send(CreateOrderRequest request, ResultCallback callback) {
+            stub.createOrder(request, new StreamObserver<>() {
+                private boolean success;
+
+                @Override
+                public void onNext(CreateOrderResponse response) {
+                    success = "COMPLETED".equals(response.getStatus());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    callback.onResult(false);
+                }
+
+                @Override
+                public void onCompleted() {
+                    callback.onResult(success);
+                }
+            });
+        }
+    }
+
+    // One long-lived StreamCreateOrders call per channel, reopened once the server has ended it
+    private static final class StreamingSender implements OrderSender {
+
+        private final OrderServiceGrpc.OrderServiceStub stub;
+        private OrderStream stream;
+        private boolean closed;
+
+        private StreamingSender(OrderServiceGrpc.OrderServiceStub stub) {
+            this.stub = stub;
+            this.stream = new OrderStream(stub);
+        }
+
+        @Override
+        public void send(CreateOrderRequest request, ResultCallback callback) {
+            OrderStream target = null;
+            synchronized (this) {
+                if (!closed) {
+                    if (stream.isTerminated()) {
+                        logger.info("Order stream ended, opening a new one");
+                        stream = new OrderStream(stub);
+                    }
+                    target = stream;
+                }
+            }
+
+            // Never leave a request without a result, or the closed loop would wait for it forever
+            if (target == null || !target.send(request, callback)) {
+                callback.onResult(false);
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                stream.complete();
+            }
+        }
+    }
+
+    // A single StreamCreateOrders call; responses are matched back by orderId
+    private static final class OrderStream implements StreamObserver<CreateOrderResponse> {
+
+        private final Map<String, ResultCallback> pending = new ConcurrentHashMap<>();
+        private final StreamObserver<CreateOrderRequest> requests;
+        private boolean terminated;
+
+        private OrderStream(OrderServiceGrpc.OrderServiceStub stub) {
+            this.requests = stub.streamCreateOrders(this);
+        }
+
+        private synchronized boolean isTerminated() {
+            return terminated;
+        }
+
+        // False once the stream has ended; the request was not sent and the caller fails it
+        private synchronized boolean send(CreateOrderRequest request, ResultCallback callback) {
+            if (terminated) {
+                return false;
+            }
+            pending.put(request.getOrderId(), callback);
+            requests.onNext(request);
+            return true;
+        }
+
+        private synchronized void complete() {
+            if (!terminated) {
+                requests.onCompleted();
+            }
+        }
+
+        @Override
+        public void onNext(CreateOrderResponse response) {
+            ResultCallback callback = pending.remove(response.getOrderId());
+            if (callback != null) {
+                callback.onResult("COMPLETED".equals(response.getStatus()));
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            logger.error("Order stream failed: {}", t.getMessage());
+            terminate();
+        }
+
+        @Override
+        public void onCompleted() {
+            terminate();
+        }
+
+        // Requests sent before this are all in pending; later ones are refused by send
+        private void terminate() {
+            synchronized (this) {
+                terminated = true;
+            }
+            for (String orderId : pending.keySet()) {
+                ResultCallback callback = pending.remove(orderId);
+                if (callback != null) {
+                    callback.onResult(false);
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+package com.lap.hacom.order.client;
+
+import com.cloudhopper.smpp.SmppConstants;
+import com.cloudhopper.smpp.SmppServerConfiguration;
+import com.cloudhopper.smpp.SmppServerHandler;
+import com.cloudhopper.smpp.SmppServerSession;
+import com.cloudhopper.smpp.SmppSessionConfiguration;
+import com.cloudhopper.smpp.impl.DefaultSmppServer;
+import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
+import com.cloudhopper.smpp.pdu.BaseBind;
+import com.cloudhopper.smpp.pdu.BaseBindResp;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
+import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
+import com.cloudhopper.smpp.type.SmppChannelException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal SMSC for local load tests: accepts any bind and answers every submit_sm with
+ * ESME_ROK after {@code --latencyMs}, so the service can run its SMPP path without a real gateway.
+ * Listens on {@code --port} (default 2776, the port in application.yaml). Tests and benchmarks
+ * embed it through {@link #start()} and {@link #close()}.
+ */
+public class StubSmscServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubSmscServer.class);
+
+    private final int port;
+    private final ScheduledExecutorService responder;
+    private final StubServerHandler handler;
+    private final DefaultSmppServer server;
+
+    public StubSmscServer(int port, long latencyMs) {
+        this.port = port;
+
+        SmppServerConfiguration configuration = new SmppServerConfiguration();
+        configuration.setName("StubSmsc");
+        configuration.setPort(port);
+        configuration.setDefaultWindowSize(1000);
+        configuration.setNonBlockingSocketsEnabled(true);
+
+        this.responder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stub-smsc-responder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.handler = new StubServerHandler(responder, latencyMs);
+        this.server = new DefaultSmppServer(configuration, handler);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 2776;
+        long latencyMs = 5;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--latencyMs=")) {
+                latencyMs = Long.parseLong(arg.substring("--latencyMs=".length()));
+            }
+        }
+
+        StubSmscServer stub = new StubSmscServer(port, latencyMs);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stub.close();
+            stopped.countDown();
+        }));
+
+        stub.start();
+        stopped.await();
+    }
+
+    public void start() throws SmppChannelException {
+        server.start();
+        logger.info("Stub SMSC listening on port {} with {} ms submit latency", port, handler.latencyMs);
+    }
+
+    // Applies to submits received from now on
+    public void setLatencyMs(long latencyMs) {
+        handler.latencyMs = latencyMs;
+    }
+
+    public long getSubmitCount() {
+        return handler.messageIds.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop();
+        server.destroy();
+        responder.shutdownNow();
+    }
+
+    private static final class StubServerHandler implements SmppServerHandler {
+
+        private final ScheduledExecutorService responder;
+        private final AtomicLong messageIds = new AtomicLong();
+        private volatile long latencyMs;
+
+        private StubServerHandler(ScheduledExecutorService responder, long latencyMs) {
+            this.responder = responder;
+            this.latencyMs = latencyMs;
+        }
+
+        // Overrides of cloudhopper callbacks that are declared with raw PDU types
+        @Override
+        @SuppressWarnings("rawtypes")
+        public void sessionBindRequested(Long sessionId, SmppSessionConfiguration sessionConfiguration,
+                                         BaseBind bindRequest) {
+            sessionConfiguration.setName("StubSmsc.session." + sessionId);
+        }
+
+        @Override
+        public void sessionCreated(Long sessionId, SmppServerSession session, BaseBindResp preparedBindResponse) {
+            logger.info("Session {} bound by {}", sessionId, session.getConfiguration().getSystemId());
+            session.serverReady(new StubSessionHandler(session));
+        }
+
+        @Override
+        public void sessionDestroyed(Long sessionId, SmppServerSession session) {
+            logger.info("Session {} unbound", sessionId);
+            session.destroy();
+        }
+
+        private final class StubSessionHandler extends DefaultSmppSessionHandler {
+
+            private final SmppServerSession session;
+
+            private StubSessionHandler(SmppServerSession session) {
+                this.session = session;
+            }
+
+            @Override
+            @SuppressWarnings("rawtypes")
+            public PduResponse firePduRequestReceived(PduRequest pduRequest) {
+                if (!(pduRequest instanceof SubmitSm submitSm)) {
+                    return pduRequest.createResponse();
+                }
+
+                SubmitSmResp response = submitSm.createResponse();
+                response.setCommandStatus(SmppConstants.STATUS_OK);
+                response.setMessageId(Long.toString(messageIds.incrementAndGet()));
+
+                // Answer asynchronously so the configured latency doesn't block the session's I/O thread
+                responder.schedule(() -> {
+                    try {
+                        session.sendResponsePdu(response);
+                    } catch (Exception e) {
+                        logger.warn("Failed to answer submit_sm: {}", e.getMessage());
+                    }
+                }, latencyMs, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        }
+    }
+}
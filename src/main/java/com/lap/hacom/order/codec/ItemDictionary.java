@@ -0,0 +1,40 @@
+package com.lap.hacom.order.codec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed list of well-known item descriptions that are stored as their index instead of the
+ * full text. Stored codes refer to positions in this list, so it may only ever be appended to.
+ */
+public class ItemDictionary {
+
+    private final List<String> items;
+    private final Map<String, Integer> codes;
+
+    public ItemDictionary(List<String> items) {
+        this.items = List.copyOf(items);
+        this.codes = new HashMap<>(items.size() * 2);
+        for (int i = 0; i < this.items.size(); i++) {
+            codes.putIfAbsent(this.items.get(i), i);
+        }
+    }
+
+    // -1 if the item is not in the dictionary and has to be stored as text
+    public int codeOf(String item) {
+        Integer code = codes.get(item);
+        return code != null ? code : -1;
+    }
+
+    public String itemOf(int code) {
+        if (code < 0 || code >= items.size()) {
+            throw new IllegalStateException("Unknown item code " + code + ", dictionary has " + items.size() + " items");
+        }
+        return items.get(code);
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
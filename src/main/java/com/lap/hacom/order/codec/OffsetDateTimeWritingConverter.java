@@ -0,0 +1,21 @@
+package com.lap.hacom.order.codec;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.time.OffsetDateTime;
+import java.util.Date;
+
+/**
+ * Turns OffsetDateTime query parameters into BSON dates so they compare against the stored ts.
+ */
+@WritingConverter
+public enum OffsetDateTimeWritingConverter implements Converter<OffsetDateTime, Date> {
+
+    INSTANCE;
+
+    @Override
+    public Date convert(OffsetDateTime source) {
+        return Date.from(source.toInstant());
+    }
+}
@@ -0,0 +1,254 @@
+package com.lap.hacom.order.codec;
+
+import com.lap.hacom.order.model.Order;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compact storage format for {@link Order}, written and read without reflection: short field
+ * names, ts as a BSON date with the zone offset in its own field, and items that are in the
+ * {@link ItemDictionary} stored as their code. Documents still in the legacy format (long field
+ * names, ts as an embedded {@code {dateTime, offset}} document) are read as well until they have
+ * been migrated.
+ */
+public class OrderCodec implements Codec<Order> {
+
+    public static final String ID = "_id";
+    public static final String ORDER_ID = "oid";
+    public static final String CUSTOMER_ID = "cid";
+    public static final String PHONE = "ph";
+    public static final String STATUS = "st";
+    public static final String ITEMS = "it";
+    public static final String TS = "ts";
+    // Zone offset of ts in seconds
+    public static final String TZ = "tz";
+
+    public static final String LEGACY_ORDER_ID = "orderId";
+    public static final String LEGACY_CUSTOMER_ID = "customerId";
+    public static final String LEGACY_PHONE = "customerPhoneNumber";
+    public static final String LEGACY_STATUS = "status";
+    public static final String LEGACY_ITEMS = "items";
+    // Legacy ts as Spring Data mapped an OffsetDateTime: the wall time as a date in the writer's
+    // zone, and the offset as a ZoneOffset document
+    public static final String LEGACY_TS_DATE_TIME = "dateTime";
+    public static final String LEGACY_TS_OFFSET = "offset";
+    public static final String LEGACY_TS_OFFSET_SECONDS = "totalSeconds";
+
+    private final ItemDictionary itemDictionary;
+    private final ZoneId legacyZone;
+
+    public OrderCodec(ItemDictionary itemDictionary) {
+        this(itemDictionary, ZoneId.systemDefault());
+    }
+
+    public OrderCodec(ItemDictionary itemDictionary, ZoneId legacyZone) {
+        this.itemDictionary = itemDictionary;
+        this.legacyZone = legacyZone;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Order order, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+
+        if (order.get_id() != null) {
+            writer.writeObjectId(ID, order.get_id());
+        }
+        writeString(writer, ORDER_ID, order.getOrderId());
+        writeString(writer, CUSTOMER_ID, order.getCustomerId());
+        writeString(writer, PHONE, order.getCustomerPhoneNumber());
+        writeString(writer, STATUS, order.getStatus());
+
+        if (order.getItems() != null) {
+            writer.writeStartArray(ITEMS);
+            for (String item : order.getItems()) {
+                int code = itemDictionary.codeOf(item);
+                if (code >= 0) {
+                    writer.writeInt32(code);
+                } else {
+                    writer.writeString(item);
+                }
+            }
+            writer.writeEndArray();
+        }
+
+        if (order.getTs() != null) {
+            writer.writeDateTime(TS, order.getTs().toInstant().toEpochMilli());
+            writer.writeInt32(TZ, order.getTs().getOffset().getTotalSeconds());
+        }
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Order decode(BsonReader reader, DecoderContext decoderContext) {
+        ObjectId id = null;
+        String orderId = null;
+        String customerId = null;
+        String phone = null;
+        String status = null;
+        List<String> items = null;
+        Long tsMillis = null;
+        int offsetSeconds = 0;
+        OffsetDateTime legacyTs = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+
+            switch (name) {
+                case ID -> id = reader.readObjectId();
+                case ORDER_ID, LEGACY_ORDER_ID -> orderId = reader.readString();
+                case CUSTOMER_ID, LEGACY_CUSTOMER_ID -> customerId = reader.readString();
+                case PHONE, LEGACY_PHONE -> phone = reader.readString();
+                case STATUS, LEGACY_STATUS -> status = reader.readString();
+                case ITEMS, LEGACY_ITEMS -> items = readItems(reader);
+                case TS -> {
+                    if (reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+                        legacyTs = readLegacyTs(reader);
+                    } else {
+                        tsMillis = reader.readDateTime();
+                    }
+                }
+                case TZ -> offsetSeconds = reader.readInt32();
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return new Order(id, orderId, customerId, phone, status, items,
+                legacyTs != null ? legacyTs : toOffsetDateTime(tsMillis, offsetSeconds));
+    }
+
+    /**
+     * Same mapping for an already parsed document, as handed over by Spring Data.
+     */
+    public Order fromDocument(Document document) {
+        Object ts = document.get(TS);
+        Integer offsetSeconds = document.getInteger(TZ);
+        OffsetDateTime orderTs;
+        if (ts instanceof Document legacy) {
+            Document offset = legacy.get(LEGACY_TS_OFFSET, Document.class);
+            Integer legacyOffsetSeconds = offset != null ? offset.getInteger(LEGACY_TS_OFFSET_SECONDS) : null;
+            Date dateTime = legacy.getDate(LEGACY_TS_DATE_TIME);
+            orderTs = dateTime != null
+                    ? toLegacyOffsetDateTime(dateTime.getTime(), legacyOffsetSeconds != null ? legacyOffsetSeconds : 0)
+                    : null;
+        } else {
+            orderTs = toOffsetDateTime(ts != null ? ((Date) ts).getTime() : null,
+                    offsetSeconds != null ? offsetSeconds : 0);
+        }
+
+        return new Order(
+                document.getObjectId(ID),
+                firstString(document, ORDER_ID, LEGACY_ORDER_ID),
+                firstString(document, CUSTOMER_ID, LEGACY_CUSTOMER_ID),
+                firstString(document, PHONE, LEGACY_PHONE),
+                firstString(document, STATUS, LEGACY_STATUS),
+                documentItems(document),
+                orderTs);
+    }
+
+    @Override
+    public Class<Order> getEncoderClass() {
+        return Order.class;
+    }
+
+    private List<String> readItems(BsonReader reader) {
+        List<String> items = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            items.add(reader.getCurrentBsonType() == BsonType.INT32
+                    ? itemDictionary.itemOf(reader.readInt32())
+                    : reader.readString());
+        }
+        reader.readEndArray();
+        return items;
+    }
+
+    private OffsetDateTime readLegacyTs(BsonReader reader) {
+        Long dateTimeMillis = null;
+        int offsetSeconds = 0;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (name.equals(LEGACY_TS_DATE_TIME) && reader.getCurrentBsonType() == BsonType.DATE_TIME) {
+                dateTimeMillis = reader.readDateTime();
+            } else if (name.equals(LEGACY_TS_OFFSET) && reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+                reader.readStartDocument();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    if (reader.readName().equals(LEGACY_TS_OFFSET_SECONDS)) {
+                        offsetSeconds = reader.readInt32();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.readEndDocument();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return dateTimeMillis != null ? toLegacyOffsetDateTime(dateTimeMillis, offsetSeconds) : null;
+    }
+
+    // The stored date is the order's wall time in the legacy writer's zone
+    private OffsetDateTime toLegacyOffsetDateTime(long dateTimeMillis, int offsetSeconds) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(dateTimeMillis), legacyZone)
+                .atOffset(ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+
+    private List<String> documentItems(Document document) {
+        List<?> stored = document.get(ITEMS, List.class);
+        if (stored == null) {
+            stored = document.get(LEGACY_ITEMS, List.class);
+        }
+        if (stored == null) {
+            return null;
+        }
+
+        List<String> items = new ArrayList<>(stored.size());
+        for (Object item : stored) {
+            items.add(item instanceof Integer code ? itemDictionary.itemOf(code) : (String) item);
+        }
+        return items;
+    }
+
+    private static String firstString(Document document, String name, String legacyName) {
+        String value = document.getString(name);
+        return value != null ? value : document.getString(legacyName);
+    }
+
+    private static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+
+    private static OffsetDateTime toOffsetDateTime(Long epochMillis, int offsetSeconds) {
+        if (epochMillis == null) {
+            return null;
+        }
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.ofTotalSeconds(offsetSeconds));
+    }
+}
@@ -0,0 +1,25 @@
+package com.lap.hacom.order.codec;
+
+import com.lap.hacom.order.model.Order;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+/**
+ * Lets template and repository reads of {@link Order} use {@link OrderCodec} instead of
+ * reflective mapping.
+ */
+@ReadingConverter
+public class OrderReadingConverter implements Converter<Document, Order> {
+
+    private final OrderCodec orderCodec;
+
+    public OrderReadingConverter(OrderCodec orderCodec) {
+        this.orderCodec = orderCodec;
+    }
+
+    @Override
+    public Order convert(Document source) {
+        return orderCodec.fromDocument(source);
+    }
+}
@@ -1,21 +1,122 @@
 package com.lap.hacom.order.config;
 
 import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.stream.Collectors;
+
 @Configuration
 public class AkkaConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(AkkaConfig.class);
 
+    public static final String ORDER_PROCESSOR_DISPATCHER = "order-processor-dispatcher";
+    public static final String ORDER_PROCESSOR_MAILBOX = "order-processor-mailbox";
+
+    @Value("${orders.processor.dispatcher.parallelism-min:2}")
+    private int parallelismMin;
+
+    @Value("${orders.processor.dispatcher.parallelism-factor:1.0}")
+    private double parallelismFactor;
+
+    @Value("${orders.processor.dispatcher.parallelism-max:16}")
+    private int parallelismMax;
+
+    @Value("${orders.processor.dispatcher.throughput:10}")
+    private int throughput;
+
+    @Value("${orders.processor.mailbox-capacity:10000}")
+    private int mailboxCapacity;
+
+    @Autowired
+    private ExecutionConfig executionConfig;
+
+    @Autowired
+    private ClusterConfig clusterConfig;
+
     @Bean
     public ActorSystem actorSystem() {
         logger.info("Initializing Akka Actor System for order processing");
-        ActorSystem system = ActorSystem.create("HacomOrderProcessingSystem");
+        ActorSystem system = ActorSystem.create("HacomOrderProcessingSystem", akkaConfig());
         logger.info("Akka Actor System initialized successfully");
         return system;
     }
-}
\ No newline at end of file
+
+    private Config akkaConfig() {
+        String executor = executionConfig.isVirtualOrderWorkflow()
+                ? VirtualThreadExecutorConfigurator.class.getName()
+                : "fork-join-executor";
+
+        logger.info("Configuring {} on {} with parallelism {}-{} (factor {})",
+                ORDER_PROCESSOR_DISPATCHER, executor, parallelismMin, parallelismMax, parallelismFactor);
+
+        // Order processor shards run on their own dispatcher so they don't compete with Akka internals
+        Config dispatcherConfig = ConfigFactory.parseString("""
+                %s {
+                  type = Dispatcher
+                  executor = "%s"
+                  fork-join-executor {
+                    parallelism-min = %d
+                    parallelism-factor = %s
+                    parallelism-max = %d
+                  }
+                  throughput = %d
+                }
+                # Bounded without blocking the sender: overflow goes to dead letters. The router
+                # refuses orders before a shard reaches this, so that is only a backstop.
+                %s {
+                  mailbox-type = "akka.dispatch.NonBlockingBoundedMailbox"
+                  mailbox-capacity = %d
+                }
+                """.formatted(ORDER_PROCESSOR_DISPATCHER, executor, parallelismMin, parallelismFactor, parallelismMax, throughput,
+                ORDER_PROCESSOR_MAILBOX, mailboxCapacity));
+
+        if (clusterConfig.isEnabled()) {
+            dispatcherConfig = dispatcherConfig.withFallback(clusterAkkaConfig());
+        }
+
+        return dispatcherConfig.withFallback(ConfigFactory.load());
+    }
+
+    private Config clusterAkkaConfig() {
+        String seedNodes = clusterConfig.getSeedNodes().stream()
+                .map(seedNode -> "\"" + seedNode + "\"")
+                .collect(Collectors.joining(", "));
+
+        logger.info("Joining order processing cluster as {}:{} with seed nodes {}",
+                clusterConfig.getHostname(), clusterConfig.getPort(), clusterConfig.getSeedNodes());
+
+        // Shards stay on a node until a rebalance moves them, so entities are never passivated;
+        // the split brain resolver downs unreachable nodes so their shards are taken over
+        return ConfigFactory.parseString("""
+                akka {
+                  actor {
+                    provider = cluster
+                    serialization-bindings {
+                      "com.lap.hacom.order.actor.ClusterSerializable" = jackson-cbor
+                    }
+                  }
+                  remote.artery.canonical {
+                    hostname = "%s"
+                    port = %d
+                  }
+                  cluster {
+                    seed-nodes = [%s]
+                    downing-provider-class = "akka.cluster.sbr.SplitBrainResolverProvider"
+                    sharding {
+                      number-of-shards = %d
+                      passivation.strategy = none
+                    }
+                  }
+                }
+                """.formatted(clusterConfig.getHostname(), clusterConfig.getPort(), seedNodes,
+                clusterConfig.getNumberOfShards()));
+    }
+}
@@ -0,0 +1,32 @@
+package com.lap.hacom.order.config;
+
+import io.micrometer.core.instrument.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Counts requests to the REST API. Actuator scrapes are left out so they don't inflate the count.
+ */
+@Component
+public class ApiRequestMetricsFilter implements WebFilter {
+
+    private final Counter apiRequestCounter;
+
+    @Autowired
+    public ApiRequestMetricsFilter(@Qualifier("apiRequestCounter") Counter apiRequestCounter) {
+        this.apiRequestCounter = apiRequestCounter;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (exchange.getRequest().getPath().value().startsWith("/api/")) {
+            apiRequestCounter.increment();
+        }
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,33 @@
+package com.lap.hacom.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Clustered order processing. When enabled the actor system joins an Akka cluster and order
+ * processing shards are spread over its nodes by Cluster Sharding instead of running locally.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orders.cluster")
+public class ClusterConfig {
+
+    private boolean enabled = false;
+
+    // Address other nodes reach this one on
+    private String hostname = "127.0.0.1";
+    private int port = 25520;
+
+    // Nodes contacted to join; a node listed first joins itself and forms the cluster
+    private List<String> seedNodes = List.of("akka://HacomOrderProcessingSystem@127.0.0.1:25520");
+
+    // Customers are hashed onto this many shards, the unit that is moved between nodes; keep it
+    // well above the largest expected node count and never change it on a running cluster
+    private int numberOfShards = 32;
+
+    // How long the receiving node waits for the owning shard to answer before failing the order
+    private long replyTimeoutMs = 30000;
+}
@@ -0,0 +1,30 @@
+package com.lap.hacom.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects which threads run the blocking stages, so the modes can be compared (A/B) under
+ * the same load.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orders.execution")
+public class ExecutionConfig {
+
+    public enum Mode {
+        // Fixed pool of platform threads with a bounded queue
+        PLATFORM,
+        // Reactor's bounded elastic scheduler, capped at the same thread and queue sizes
+        BOUNDED_ELASTIC,
+        // A virtual thread per blocking submit
+        VIRTUAL
+    }
+
+    // Where blocking SMPP submits run
+    private Mode mode = Mode.PLATFORM;
+
+    // Also run the order processor actors on virtual threads instead of the fork-join dispatcher
+    private boolean virtualOrderWorkflow = false;
+}
@@ -0,0 +1,42 @@
+package com.lap.hacom.order.config;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the scheduler for a blocking stage in the given {@link ExecutionConfig.Mode}. Platform
+ * and bounded elastic reject work beyond {@code threads + queueCapacity} with a
+ * RejectedExecutionException; virtual threads are unbounded, so callers cap them themselves.
+ */
+public final class ExecutionSchedulers {
+
+    private ExecutionSchedulers() {
+    }
+
+    public static Scheduler blockingScheduler(ExecutionConfig.Mode mode, String name, int threads, int queueCapacity) {
+        return switch (mode) {
+            case PLATFORM -> {
+                AtomicInteger threadCount = new AtomicInteger();
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                        threads, threads,
+                        0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                yield Schedulers.fromExecutorService(executor, name);
+            }
+            case BOUNDED_ELASTIC -> Schedulers.newBoundedElastic(threads, queueCapacity, name, 60, true);
+            case VIRTUAL -> Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory()), name);
+        };
+    }
+}
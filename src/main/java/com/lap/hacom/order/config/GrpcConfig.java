@@ -0,0 +1,134 @@
+package com.lap.hacom.order.config;
+
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@link GrpcTransportConfig} to the Netty server built by the gRPC starter: the call
+ * executor, explicit boss/worker event loops, keepalive and connection age, flow control and
+ * message limits.
+ */
+@Configuration
+public class GrpcConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(GrpcConfig.class);
+
+    private final GrpcTransportConfig transportConfig;
+
+    // Owned here, not by the server; released after the server has stopped
+    private volatile ExecutorService callExecutor;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    @Autowired
+    public GrpcConfig(GrpcTransportConfig transportConfig) {
+        this.transportConfig = transportConfig;
+    }
+
+    @Bean
+    public GrpcServerConfigurer grpcTransportConfigurer() {
+        return serverBuilder -> {
+            if (!(serverBuilder instanceof NettyServerBuilder builder)) {
+                logger.warn("gRPC server is not Netty based ({}), transport settings not applied",
+                        serverBuilder.getClass().getName());
+                return;
+            }
+            configureExecutor(builder);
+            configureEventLoops(builder);
+            configureConnections(builder);
+        };
+    }
+
+    private void configureExecutor(NettyServerBuilder builder) {
+        callExecutor = GrpcExecutors.callExecutor(transportConfig.getExecutor(), transportConfig.getExecutorThreads());
+        if (callExecutor == null) {
+            builder.directExecutor();
+        } else {
+            builder.executor(callExecutor);
+        }
+        logger.info("gRPC calls run on the {} executor", transportConfig.getExecutor());
+    }
+
+    /**
+     * Tasks waiting for a thread of the BOUNDED call executor; always 0 for the other modes,
+     * which have no queue to saturate.
+     */
+    public int queuedCallTasks() {
+        return callExecutor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+    }
+
+    private void configureEventLoops(NettyServerBuilder builder) {
+        boolean epoll = transportConfig.isEpoll() && Epoll.isAvailable();
+        Class<? extends ServerChannel> channelType;
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(transportConfig.getBossThreads(), new DefaultThreadFactory("grpc-boss", true));
+            workerGroup = new EpollEventLoopGroup(transportConfig.getWorkerThreads(), new DefaultThreadFactory("grpc-worker", true));
+            channelType = EpollServerSocketChannel.class;
+        } else {
+            bossGroup = new NioEventLoopGroup(transportConfig.getBossThreads(), new DefaultThreadFactory("grpc-boss", true));
+            workerGroup = new NioEventLoopGroup(transportConfig.getWorkerThreads(), new DefaultThreadFactory("grpc-worker", true));
+            channelType = NioServerSocketChannel.class;
+        }
+
+        builder.bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup)
+                .channelType(channelType);
+
+        logger.info("gRPC transport: {} with {} boss and {} worker threads", epoll ? "epoll" : "nio",
+                transportConfig.getBossThreads(),
+                transportConfig.getWorkerThreads() == 0 ? "default" : transportConfig.getWorkerThreads());
+    }
+
+    private void configureConnections(NettyServerBuilder builder) {
+        builder.keepAliveTime(transportConfig.getKeepAliveTimeSec(), TimeUnit.SECONDS)
+                .keepAliveTimeout(transportConfig.getKeepAliveTimeoutSec(), TimeUnit.SECONDS)
+                .permitKeepAliveTime(transportConfig.getPermitKeepAliveTimeSec(), TimeUnit.SECONDS)
+                .maxInboundMessageSize(transportConfig.getMaxInboundMessageBytes())
+                .maxConcurrentCallsPerConnection(transportConfig.getMaxConcurrentCallsPerConnection());
+
+        if (transportConfig.getMaxConnectionIdleSec() > 0) {
+            builder.maxConnectionIdle(transportConfig.getMaxConnectionIdleSec(), TimeUnit.SECONDS);
+        }
+        if (transportConfig.getMaxConnectionAgeSec() > 0) {
+            builder.maxConnectionAge(transportConfig.getMaxConnectionAgeSec(), TimeUnit.SECONDS)
+                    .maxConnectionAgeGrace(transportConfig.getMaxConnectionAgeGraceSec(), TimeUnit.SECONDS);
+        }
+
+        if (transportConfig.isAutoFlowControl()) {
+            builder.initialFlowControlWindow(transportConfig.getFlowControlWindowBytes());
+        } else {
+            builder.flowControlWindow(transportConfig.getFlowControlWindowBytes());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (callExecutor != null) {
+            callExecutor.shutdown();
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.lap.hacom.order.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the executor gRPC runs call callbacks on for a {@link GrpcTransportConfig.Executor}
+ * mode. Returns null for DIRECT, which runs them on the transport threads instead.
+ *
+ * <p>The BOUNDED pool's queue never refuses a task: a rejected callback of a running call would
+ * leave its stream hanging and its admission permit taken. New calls are refused at start by
+ * {@code CallExecutorAdmissionInterceptor} once the queue holds {@code queueCapacity} tasks.
+ */
+public final class GrpcExecutors {
+
+    private GrpcExecutors() {
+    }
+
+    public static ExecutorService callExecutor(GrpcTransportConfig.Executor mode, int threads) {
+        return switch (mode) {
+            case BOUNDED -> {
+                AtomicInteger threadCount = new AtomicInteger();
+                yield new ThreadPoolExecutor(
+                        threads, threads,
+                        0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "grpc-call-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+            }
+            case DIRECT -> null;
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("grpc-call-", 1).factory());
+        };
+    }
+}
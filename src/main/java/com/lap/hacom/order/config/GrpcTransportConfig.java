@@ -0,0 +1,54 @@
+package com.lap.hacom.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * gRPC server transport tuning, applied by {@link GrpcConfig} on top of {@code grpc.server}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "grpc.transport")
+public class GrpcTransportConfig {
+
+    public enum Executor {
+        // Fixed pool of platform threads; new calls are refused while executorQueueCapacity tasks wait
+        BOUNDED,
+        // Run service code on the Netty event loop; only safe because the handlers never block
+        DIRECT,
+        // A virtual thread per call callback
+        VIRTUAL
+    }
+
+    private Executor executor = Executor.BOUNDED;
+    private int executorThreads = 16;
+    private int executorQueueCapacity = 10000;
+
+    // Netty event loops; 0 worker threads lets Netty pick twice the core count
+    private int bossThreads = 1;
+    private int workerThreads = 0;
+    // Use native epoll transport when the platform has it, NIO otherwise
+    private boolean epoll = true;
+
+    // Response compression, used only on calls whose client accepts it; "identity" turns it off
+    private String compression = "gzip";
+    // Smaller responses are sent uncompressed even on a compressed call
+    private int compressionMinBytes = 1024;
+
+    // Pings detect dead peers; max connection age makes clients reconnect so a load balancer
+    // can spread them over new instances
+    private long keepAliveTimeSec = 60;
+    private long keepAliveTimeoutSec = 20;
+    private long permitKeepAliveTimeSec = 30;
+    private long maxConnectionIdleSec = 0;
+    private long maxConnectionAgeSec = 300;
+    private long maxConnectionAgeGraceSec = 30;
+
+    // Initial HTTP/2 flow control window; with auto-flow-control Netty still adapts it to the
+    // measured bandwidth-delay product, otherwise it is fixed
+    private int flowControlWindowBytes = 1024 * 1024;
+    private boolean autoFlowControl = true;
+    private int maxInboundMessageBytes = 4 * 1024 * 1024;
+    private int maxConcurrentCallsPerConnection = 1000;
+}
@@ -0,0 +1,33 @@
+package com.lap.hacom.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Local ingestion journal. When enabled, orders that don't wait for their SMS are acknowledged
+ * once appended to the journal on disk and written to Mongo afterwards by the replayer.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orders.journal")
+public class JournalConfig {
+
+    private boolean enabled = false;
+    private String directory = "journal";
+
+    // Each segment is a file of this size mapped into memory
+    private int segmentSizeBytes = 64 * 1024 * 1024;
+    // Appends are refused once this many segments are waiting to be replayed
+    private int maxSegments = 32;
+
+    // Appends waiting for the writer; a full queue refuses new ones
+    private int queueCapacity = 16384;
+    // Appends made durable by one fsync, and how long the writer waits to fill a batch
+    private int groupCommitMaxBatch = 1024;
+    private long groupCommitMaxWaitMicros = 500;
+
+    // Records written to Mongo per replay batch, and how often the replayer looks for new ones
+    private int replayBatchSize = 256;
+    private long replayIntervalMs = 20;
+}
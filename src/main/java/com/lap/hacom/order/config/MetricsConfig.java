@@ -2,12 +2,25 @@ package com.lap.hacom.order.config;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class MetricsConfig {
 
+    // Safety net against unbounded tag values; beyond these limits new series are dropped
+
+    @Bean
+    public MeterFilter shardTagLimit() {
+        return MeterFilter.maximumAllowableTags("hacom.orders.shard", "shard", 64, MeterFilter.deny());
+    }
+
+    @Bean
+    public MeterFilter grpcMethodTagLimit() {
+        return MeterFilter.maximumAllowableTags("hacom.grpc", "method", 32, MeterFilter.deny());
+    }
+
     @Bean
     public Counter grpcRequestCounter(MeterRegistry meterRegistry) {
         return Counter.builder("hacom.grpc.requests.total")
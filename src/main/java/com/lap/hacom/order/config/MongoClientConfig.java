@@ -0,0 +1,55 @@
+package com.lap.hacom.order.config;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mongo client tuning. These settings are applied after {@code mongodb.uri}, so they take
+ * precedence over the same options given in the URI.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "mongodb.client")
+public class MongoClientConfig {
+
+    private int minPoolSize = 10;
+    private int maxPoolSize = 100;
+    // Connections being established at the same time per server
+    private int maxConnecting = 2;
+    // How long an operation waits in the pool's wait queue for a connection
+    private long maxWaitMs = 2000;
+    private long maxIdleMs = 60000;
+    private long connectTimeoutMs = 5000;
+    private long readTimeoutMs = 30000;
+    private long serverSelectionTimeoutMs = 5000;
+
+    // Wire compression in order of preference: zstd, snappy, zlib; the server picks the first it supports
+    private List<String> compressors = List.of("zstd", "snappy");
+
+    // Read preference for the read-only API queries (counts, export)
+    private String queryReadPreference = "primary";
+
+    // Write concern (WriteConcern constant name) for order writes, by the status being written
+    private Map<String, String> statusWriteConcern = new HashMap<>();
+    private String defaultWriteConcern = "ACKNOWLEDGED";
+
+    public ReadPreference queryReadPreference() {
+        return ReadPreference.valueOf(queryReadPreference);
+    }
+
+    public WriteConcern writeConcernFor(String status) {
+        String name = statusWriteConcern.getOrDefault(status, defaultWriteConcern);
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (writeConcern == null) {
+            throw new IllegalArgumentException("Unknown write concern " + name + " for status " + status);
+        }
+        return writeConcern;
+    }
+}
@@ -1,16 +1,31 @@
 package com.lap.hacom.order.config;
 
+import com.lap.hacom.order.codec.ItemDictionary;
+import com.lap.hacom.order.codec.OffsetDateTimeWritingConverter;
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.codec.OrderReadingConverter;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
 import com.mongodb.reactivestreams.client.MongoClient;
 import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import org.bson.codecs.configuration.CodecRegistries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.AbstractReactiveMongoConfiguration;
-import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableReactiveMongoRepositories(basePackages = "com.lap.hacom.order.repository")
 public class MongoConfig extends AbstractReactiveMongoConfiguration {
@@ -23,6 +38,21 @@ public class MongoConfig extends AbstractReactiveMongoConfiguration {
     @Value("${mongodb.uri}")
     private String mongoUri;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StorageConfig storageConfig;
+
+    @Autowired
+    private MongoClientConfig clientConfig;
+
+    @Bean
+    public OrderCodec orderCodec() {
+        logger.info("Order item dictionary has {} entries", storageConfig.getItemDictionary().size());
+        return new OrderCodec(new ItemDictionary(storageConfig.getItemDictionary()), storageConfig.legacyZoneId());
+    }
+
     @Override
     protected String getDatabaseName() {
         logger.info("Configuring MongoDB database: {}", databaseName);
@@ -32,13 +62,49 @@ public class MongoConfig extends AbstractReactiveMongoConfiguration {
     @Override
     @Bean
     public MongoClient reactiveMongoClient() {
-        logger.info("Creating MongoDB reactive client with URI: {}", mongoUri);
-        return MongoClients.create(mongoUri);
+        logger.info("Creating MongoDB reactive client with URI: {}, pool {}-{}, compressors {}",
+                mongoUri, clientConfig.getMinPoolSize(), clientConfig.getMaxPoolSize(), clientConfig.getCompressors());
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongoUri))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .minSize(clientConfig.getMinPoolSize())
+                        .maxSize(clientConfig.getMaxPoolSize())
+                        .maxConnecting(clientConfig.getMaxConnecting())
+                        .maxWaitTime(clientConfig.getMaxWaitMs(), TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(clientConfig.getMaxIdleMs(), TimeUnit.MILLISECONDS)
+                        // Publishes mongodb.driver.pool.size / checkedout / waitqueuesize gauges
+                        .addConnectionPoolListener(new MongoMetricsConnectionPoolListener(meterRegistry)))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(clientConfig.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                        .readTimeout(clientConfig.getReadTimeoutMs(), TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(clientConfig.getServerSelectionTimeoutMs(), TimeUnit.MILLISECONDS))
+                .compressorList(compressors(clientConfig.getCompressors()))
+                // Per-command latency as the mongodb.driver.commands timer
+                .addCommandListener(new MongoMetricsCommandListener(meterRegistry))
+                // Collections opened with Order as document class encode through the hand-written codec
+                .codecRegistry(CodecRegistries.fromRegistries(
+                        CodecRegistries.fromCodecs(orderCodec()),
+                        MongoClientSettings.getDefaultCodecRegistry()))
+                .build();
+        return MongoClients.create(settings);
     }
 
-    @Bean
-    public ReactiveMongoTemplate reactiveMongoTemplate() {
-        logger.info("Creating ReactiveMongoTemplate for database: {}", databaseName);
-        return new ReactiveMongoTemplate(reactiveMongoClient(), getDatabaseName());
+    private static List<MongoCompressor> compressors(List<String> names) {
+        return names.stream()
+                .map(name -> switch (name.toLowerCase()) {
+                    case "zstd" -> MongoCompressor.createZstdCompressor();
+                    case "snappy" -> MongoCompressor.createSnappyCompressor();
+                    case "zlib" -> MongoCompressor.createZlibCompressor();
+                    default -> throw new IllegalArgumentException("Unsupported Mongo compressor: " + name);
+                })
+                .toList();
+    }
+
+    // The inherited reactiveMongoTemplate bean uses the converter configured here
+    @Override
+    protected void configureConverters(MongoCustomConversions.MongoConverterConfigurationAdapter adapter) {
+        adapter.registerConverter(new OrderReadingConverter(orderCodec()));
+        adapter.registerConverter(OffsetDateTimeWritingConverter.INSTANCE);
     }
 }
@@ -0,0 +1,145 @@
+package com.lap.hacom.order.config;
+
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OrderCountRollup;
+import com.lap.hacom.order.model.OutboxMessage;
+import com.lap.hacom.order.service.SmsNotificationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Creates the indexes the repository queries rely on. Runs once the application is ready and
+ * the legacy order migration is done, and does not block startup; creating an index that already
+ * exists with the same spec is a no-op, and an index that fails is logged and skipped.
+ */
+@Component
+public class MongoIndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexManager.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderStorageMigration orderStorageMigration;
+    private final Duration outboxRetention;
+
+    @Autowired
+    public MongoIndexManager(ReactiveMongoTemplate mongoTemplate, OrderStorageMigration orderStorageMigration,
+                             @Value("${orders.outbox.dispatched-retention-hours:168}") long outboxRetentionHours) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderStorageMigration = orderStorageMigration;
+        this.outboxRetention = Duration.ofHours(outboxRetentionHours);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        // Building while the migration rewrites every order slows both down, and oid_unique would
+        // make the migration abort at the first legacy duplicate instead of reporting it here
+        orderStorageMigration.migrated()
+                .then(Mono.defer(this::createIndexes))
+                .subscribe(failed -> {
+                    if (failed == 0) {
+                        logger.info("MongoDB indexes ensured");
+                    } else {
+                        logger.warn("MongoDB indexes ensured, {} failed", failed);
+                    }
+                });
+    }
+
+    /**
+     * Ensures every index in turn and emits how many failed.
+     */
+    Mono<Long> createIndexes() {
+        logger.info("Ensuring MongoDB indexes");
+
+        ReactiveIndexOperations orderIndexes = mongoTemplate.indexOps(Order.class);
+        ReactiveIndexOperations rollupIndexes = mongoTemplate.indexOps(OrderCountRollup.class);
+        ReactiveIndexOperations retryIndexes = mongoTemplate.indexOps(SmsNotificationService.RETRY_COLLECTION);
+        ReactiveIndexOperations outboxIndexes = mongoTemplate.indexOps(OutboxMessage.class);
+
+        return Flux.concat(
+                        Flux.fromIterable(orderCollectionIndexes()).concatMap(index -> ensure(orderIndexes, index)),
+                        // completed orders due for archival
+                        ensure(orderIndexes, new Index()
+                                .on(OrderCodec.STATUS, Sort.Direction.ASC)
+                                .on(OrderCodec.TS, Sort.Direction.ASC)
+                                .named("st_ts")),
+                        // rollup bucket range sums
+                        ensure(rollupIndexes, new Index()
+                                .on("granularity", Sort.Direction.ASC)
+                                .on("dimension", Sort.Direction.ASC)
+                                .on("bucketStart", Sort.Direction.ASC)
+                                .named("granularity_dimension_bucketStart")),
+                        // due SMS retries
+                        ensure(retryIndexes, new Index()
+                                .on("nextAttemptAt", Sort.Direction.ASC)
+                                .named("nextAttemptAt")),
+                        // outbox claims, claimed batch lookup and the oldest-entry gauge
+                        ensure(outboxIndexes, new Index()
+                                .on("leaseUntil", Sort.Direction.ASC)
+                                .named("leaseUntil")),
+                        ensure(outboxIndexes, new Index()
+                                .on("leaseOwner", Sort.Direction.ASC)
+                                .sparse()
+                                .named("leaseOwner")),
+                        ensure(outboxIndexes, new Index()
+                                .on("createdAt", Sort.Direction.ASC)
+                                .named("createdAt")),
+                        // dispatched entries are kept for a while so a retried order isn't notified twice
+                        ensure(outboxIndexes, new Index()
+                                .on("dispatchedAt", Sort.Direction.ASC)
+                                .expire(outboxRetention)
+                                .named("dispatchedAt_ttl")))
+                .filter(ensured -> !ensured)
+                .count();
+    }
+
+    private static Mono<Boolean> ensure(ReactiveIndexOperations indexOperations, Index index) {
+        String name = index.getIndexOptions().getString("name");
+        return indexOperations.ensureIndex(index)
+                .doOnNext(ensured -> logger.info("MongoDB index ensured: {}", ensured))
+                .thenReturn(true)
+                .onErrorResume(error -> {
+                    logger.error("Failed to ensure MongoDB index {}: {}", name, error.getMessage(), error);
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Indexes of the orders collection the archive buckets get as well, so lookups and range
+     * queries behave the same on both tiers.
+     */
+    public static List<Index> orderCollectionIndexes() {
+        return List.of(
+                // findByOrderId; partial so orders not migrated yet don't collide on a missing oid
+                new Index()
+                        .on(OrderCodec.ORDER_ID, Sort.Direction.ASC)
+                        .unique()
+                        .partial(PartialIndexFilter.of(Criteria.where(OrderCodec.ORDER_ID).exists(true)))
+                        .named("oid_unique"),
+                // ts range counts and the (ts, _id) sorted export
+                new Index()
+                        .on(OrderCodec.TS, Sort.Direction.ASC)
+                        .on(OrderCodec.ID, Sort.Direction.ASC)
+                        .named("ts_id"),
+                new Index()
+                        .on(OrderCodec.CUSTOMER_ID, Sort.Direction.ASC)
+                        .on(OrderCodec.TS, Sort.Direction.ASC)
+                        .named("cid_ts"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.lap.hacom.order.config;
+
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.model.Order;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Moves orders written before the compact {@link OrderCodec} format over to it. The legacy
+ * indexes go first, before any order is accepted: the old unique orderId index would reject every
+ * new order after the first one, since compact documents have no orderId field. The documents are
+ * then rewritten in the background with a single server-side pipeline update; until that has
+ * finished, legacy documents are still readable but not found by orderId or customer lookups.
+ * {@link MongoIndexManager} waits for {@link #migrated()} before building the order indexes.
+ */
+@Component
+public class OrderStorageMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStorageMigration.class);
+
+    private static final List<String> LEGACY_INDEXES = List.of("orderId_unique", "customerId_ts");
+    private static final Duration INDEX_DROP_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final StorageConfig storageConfig;
+    private final Sinks.Empty<Void> migrated = Sinks.empty();
+
+    @Autowired
+    public OrderStorageMigration(ReactiveMongoTemplate mongoTemplate, StorageConfig storageConfig) {
+        this.mongoTemplate = mongoTemplate;
+        this.storageConfig = storageConfig;
+    }
+
+    @PostConstruct
+    public void dropLegacyIndexes() {
+        // Blocks startup on purpose, see above; an unreachable Mongo is logged, not fatal
+        mongoTemplate.indexOps(Order.class).getIndexInfo()
+                .map(IndexInfo::getName)
+                .filter(LEGACY_INDEXES::contains)
+                .concatMap(name -> mongoTemplate.indexOps(Order.class).dropIndex(name).thenReturn(name))
+                .doOnNext(name -> logger.info("Dropped legacy order index {}", name))
+                .then()
+                .onErrorResume(error -> {
+                    logger.error("Failed to drop legacy order indexes: {}", error.getMessage(), error);
+                    return Mono.empty();
+                })
+                .block(INDEX_DROP_TIMEOUT);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyOrders() {
+        if (!storageConfig.isMigrateLegacy()) {
+            migrated.tryEmitEmpty();
+            return;
+        }
+
+        // Legacy ts is the embedded {dateTime, offset} document Spring Data made of an OffsetDateTime:
+        // dateTime holds the wall time as a date in the writer's zone. Read back as wall-clock parts
+        // in that zone and shifted by the offset, it becomes the instant; the offset moves to tz.
+        // Items stay as text, which the codec reads as well as dictionary codes.
+        String legacyTs = "$" + OrderCodec.TS;
+        Document isLegacyTs = new Document("$eq", List.of(new Document("$type", legacyTs), "object"));
+        Document offsetSeconds = new Document("$ifNull", List.of(
+                legacyTs + "." + OrderCodec.LEGACY_TS_OFFSET + "." + OrderCodec.LEGACY_TS_OFFSET_SECONDS, 0));
+        Document wallTimeAsUtc = new Document("$let", new Document()
+                .append("vars", new Document("p", new Document("$dateToParts", new Document()
+                        .append("date", legacyTs + "." + OrderCodec.LEGACY_TS_DATE_TIME)
+                        .append("timezone", mongoZone(storageConfig.legacyZoneId())))))
+                .append("in", new Document("$dateFromParts", new Document()
+                        .append("year", "$$p.year")
+                        .append("month", "$$p.month")
+                        .append("day", "$$p.day")
+                        .append("hour", "$$p.hour")
+                        .append("minute", "$$p.minute")
+                        .append("second", "$$p.second")
+                        .append("millisecond", "$$p.millisecond"))));
+
+        List<Document> pipeline = List.of(
+                new Document("$set", new Document()
+                        .append(OrderCodec.ORDER_ID, new Document("$ifNull", List.of(
+                                "$" + OrderCodec.LEGACY_ORDER_ID, "$" + OrderCodec.ORDER_ID)))
+                        .append(OrderCodec.CUSTOMER_ID, new Document("$ifNull", List.of(
+                                "$" + OrderCodec.LEGACY_CUSTOMER_ID, "$" + OrderCodec.CUSTOMER_ID)))
+                        .append(OrderCodec.PHONE, new Document("$ifNull", List.of(
+                                "$" + OrderCodec.LEGACY_PHONE, "$" + OrderCodec.PHONE)))
+                        .append(OrderCodec.STATUS, new Document("$ifNull", List.of(
+                                "$" + OrderCodec.LEGACY_STATUS, "$" + OrderCodec.STATUS)))
+                        .append(OrderCodec.ITEMS, new Document("$ifNull", List.of(
+                                "$" + OrderCodec.LEGACY_ITEMS, "$" + OrderCodec.ITEMS)))
+                        .append(OrderCodec.TS, new Document("$cond", List.of(isLegacyTs,
+                                new Document("$subtract", List.of(wallTimeAsUtc,
+                                        new Document("$multiply", List.of(offsetSeconds, 1000)))),
+                                legacyTs)))
+                        .append(OrderCodec.TZ, new Document("$cond", List.of(isLegacyTs,
+                                offsetSeconds,
+                                new Document("$ifNull", List.of("$" + OrderCodec.TZ, 0)))))),
+                new Document("$unset", List.of(
+                        OrderCodec.LEGACY_ORDER_ID,
+                        OrderCodec.LEGACY_CUSTOMER_ID,
+                        OrderCodec.LEGACY_PHONE,
+                        OrderCodec.LEGACY_STATUS,
+                        OrderCodec.LEGACY_ITEMS)));
+
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class))
+                .flatMap(collection -> Mono.from(collection.updateMany(
+                        Filters.or(
+                                Filters.exists(OrderCodec.LEGACY_ORDER_ID),
+                                // also orders an earlier migration left with the embedded ts
+                                Filters.type(OrderCodec.TS, BsonType.DOCUMENT)),
+                        pipeline)))
+                .subscribe(
+                        result -> {
+                            if (result.getModifiedCount() > 0) {
+                                logger.info("Migrated {} orders to the compact storage format", result.getModifiedCount());
+                            }
+                        },
+                        error -> {
+                            logger.error("Failed to migrate legacy orders: {}", error.getMessage(), error);
+                            migrated.tryEmitEmpty();
+                        },
+                        migrated::tryEmitEmpty);
+    }
+
+    // $dateToParts takes Olson ids and +hh:mm offsets, not Java's "Z"
+    static String mongoZone(ZoneId zone) {
+        if (zone instanceof ZoneOffset offset) {
+            return offset.getTotalSeconds() == 0 ? "UTC" : offset.getId();
+        }
+        return zone.getId();
+    }
+
+    /**
+     * Completes once the legacy migration has finished, failed or was skipped; never errors.
+     */
+    public Mono<Void> migrated() {
+        return migrated.asMono();
+    }
+}
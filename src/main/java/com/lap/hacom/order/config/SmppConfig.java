@@ -20,5 +20,19 @@ public class SmppConfig {
     private byte addressNpi;
     private String sourceAddress;
     private boolean enabled;
+    private long submitTimeoutMs = 10000;
+    private int sessionCount = 1;
+    private int windowSize = 1;
+    private double maxTps = 100;
+    private int maxBurst = 10;
+    private long enquireLinkIntervalMs = 30000;
+    private long enquireLinkTimeoutMs = 5000;
+    private int retryMaxAttempts = 5;
+    private long retryInitialBackoffMs = 1000;
+    private long retryMaxBackoffMs = 300000;
+    private long retryPollIntervalMs = 1000;
+    private int retryBatchSize = 50;
+    private int notificationThreads = 4;
+    private int notificationQueueCapacity = 1000;
 
 }
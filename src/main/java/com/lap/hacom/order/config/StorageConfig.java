@@ -0,0 +1,32 @@
+package com.lap.hacom.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order storage format settings.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orders.storage")
+public class StorageConfig {
+
+    // Item descriptions stored as their index in this list; append only, stored codes refer to it
+    private List<String> itemDictionary = new ArrayList<>();
+
+    // Rewrite orders still stored with the legacy long field names once the application is ready
+    private boolean migrateLegacy = true;
+
+    // Zone of the JVM that wrote the legacy orders; their ts wall time was stored as a date in it.
+    // Empty means this JVM's default zone
+    private String legacyZone = "";
+
+    public ZoneId legacyZoneId() {
+        return legacyZone == null || legacyZone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(legacyZone);
+    }
+}
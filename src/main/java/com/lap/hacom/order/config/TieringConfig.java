@@ -0,0 +1,29 @@
+package com.lap.hacom.order.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hot/cold tiering of orders. Completed orders older than {@code archiveAfterDays} are moved
+ * out of the orders collection into one archive collection per UTC month of their timestamp.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orders.tiering")
+public class TieringConfig {
+
+    private boolean enabled = true;
+    private int archiveAfterDays = 30;
+
+    // How often to look for orders to archive
+    private long pollIntervalMs = 60000;
+    // Orders moved per batch, and the pause between batches so archival doesn't compete with live writes
+    private int batchSize = 500;
+    private long batchIntervalMs = 200;
+
+    // Archive buckets queried in parallel by fan-out lookups and counts
+    private int fanOutConcurrency = 4;
+    // How long the list of existing archive buckets is cached
+    private long bucketRefreshMs = 60000;
+}
@@ -0,0 +1,25 @@
+package com.lap.hacom.order.config;
+
+import akka.dispatch.DispatcherPrerequisites;
+import akka.dispatch.ExecutorServiceConfigurator;
+import akka.dispatch.ExecutorServiceFactory;
+import com.typesafe.config.Config;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Akka executor that runs each dispatcher task on a new virtual thread. Referenced by class
+ * name from the dispatcher's {@code executor} setting.
+ */
+public class VirtualThreadExecutorConfigurator extends ExecutorServiceConfigurator {
+
+    public VirtualThreadExecutorConfigurator(Config config, DispatcherPrerequisites prerequisites) {
+        super(config, prerequisites);
+    }
+
+    @Override
+    public ExecutorServiceFactory createExecutorServiceFactory(String id, ThreadFactory threadFactory) {
+        return () -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(id + "-", 1).factory());
+    }
+}
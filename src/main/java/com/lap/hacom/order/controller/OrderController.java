@@ -1,12 +1,19 @@
 package com.lap.hacom.order.controller;
 
-import com.lap.hacom.order.repository.OrderRepository;
+import com.lap.hacom.order.model.OrderStatusEvent;
+import com.lap.hacom.order.service.OrderEventBus;
+import com.lap.hacom.order.service.OrderExportService;
+import com.lap.hacom.order.service.OrderRollupService;
+import com.lap.hacom.order.service.OrderStatusCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.OffsetDateTime;
@@ -18,18 +25,27 @@ public class OrderController {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
-    private final OrderRepository orderRepository;
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private final OrderStatusCache orderStatusCache;
+    private final OrderExportService orderExportService;
+    private final OrderRollupService orderRollupService;
+    private final OrderEventBus orderEventBus;
 
     @Autowired
-    public OrderController(OrderRepository orderRepository) {
-        this.orderRepository = orderRepository;
+    public OrderController(OrderStatusCache orderStatusCache, OrderExportService orderExportService,
+                           OrderRollupService orderRollupService, OrderEventBus orderEventBus) {
+        this.orderStatusCache = orderStatusCache;
+        this.orderExportService = orderExportService;
+        this.orderRollupService = orderRollupService;
+        this.orderEventBus = orderEventBus;
     }
 
     @GetMapping("/{orderId}/status")
     public Mono<ResponseEntity<Map<String, Object>>> getOrderStatus(@PathVariable String orderId) {
         logger.info("Received request to check status for order: {}", orderId);
 
-        return orderRepository.findByOrderId(orderId)
+        return orderStatusCache.findByOrderId(orderId)
                 .map(order -> {
                     logger.info("Order found: {} with status: {}", orderId, order.getStatus());
 
@@ -56,6 +72,33 @@ public class OrderController {
                         orderId, error.getMessage(), error));
     }
 
+    /**
+     * Server-sent status changes for one order instead of polling the status endpoint; the
+     * stream ends once the order is COMPLETED.
+     */
+    @GetMapping(value = "/{orderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<OrderStatusEvent>> watchOrder(@PathVariable String orderId) {
+        logger.debug("Watching status events for order: {}", orderId);
+        return toServerSentEvents(orderEventBus.watchOrder(orderId));
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<OrderStatusEvent>> watchCustomerOrders(@RequestParam String customerId) {
+        logger.debug("Watching status events for customer: {}", customerId);
+        return toServerSentEvents(orderEventBus.watchCustomer(customerId));
+    }
+
+    // Idle watches get a comment line now and then so proxies don't close the connection
+    private Flux<ServerSentEvent<OrderStatusEvent>> toServerSentEvents(Flux<OrderStatusEvent> events) {
+        Flux<ServerSentEvent<OrderStatusEvent>> updates = events
+                .map(event -> ServerSentEvent.builder(event).event("status").id(event.getOrderId()).build());
+        Flux<ServerSentEvent<OrderStatusEvent>> heartbeats = orderEventBus.heartbeat()
+                .map(tick -> ServerSentEvent.<OrderStatusEvent>builder().comment("keepalive").build());
+
+        // One upstream watch shared by both branches; heartbeats stop when the updates complete
+        return updates.publish(shared -> shared.mergeWith(heartbeats.takeUntilOther(shared.ignoreElements())), 1);
+    }
+
     @GetMapping("/count")
     public Mono<ResponseEntity<Map<String, Object>>> getOrderCountByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
@@ -75,7 +118,7 @@ public class OrderController {
             return Mono.just(ResponseEntity.badRequest().body(errorResponse));
         }
 
-        return orderRepository.countOrdersByDateRange(startDate, endDate)
+        return orderRollupService.countOrders(startDate, endDate)
                 .map(count -> {
                     logger.info("Found {} orders between {} and {}", count, startDate, endDate);
 
@@ -92,6 +135,71 @@ public class OrderController {
                         error.getMessage(), error));
     }
 
+    @GetMapping("/count/consistency")
+    public Mono<ResponseEntity<Map<String, Object>>> checkOrderCountConsistency(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endDate) {
+
+        logger.info("Received request to check rollup consistency between {} and {}", startDate, endDate);
+
+        if (startDate.isAfter(endDate)) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+
+        return orderRollupService.checkConsistency(startDate, endDate)
+                .map(ResponseEntity::ok)
+                .doOnError(error -> logger.error("Error checking rollup consistency: {}",
+                        error.getMessage(), error));
+    }
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Map<String, String>> rebuildOrderCountRollups() {
+        logger.info("Received request to rebuild order count rollups");
+
+        // Runs in the background; a full rebuild can take a while on a large collection
+        orderRollupService.rebuild().subscribe(
+                ignored -> { },
+                error -> logger.error("Order count rollup rebuild failed: {}", error.getMessage()));
+
+        return ResponseEntity.accepted().body(Map.of(
+                "status", "REBUILD_STARTED",
+                "timestamp", OffsetDateTime.now().toString()
+        ));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<Flux<String>> exportOrders(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime endDate,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int limit,
+            @RequestParam(defaultValue = "ndjson") String format) {
+
+        logger.info("Received request to export orders between {} and {} in {} format, after: {}",
+                startDate, endDate, format, after);
+
+        if (startDate.isAfter(endDate)) {
+            logger.warn("Invalid export date range: start date {} is after end date {}", startDate, endDate);
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            if ("csv".equalsIgnoreCase(format)) {
+                return ResponseEntity.ok()
+                        .contentType(TEXT_CSV)
+                        .body(orderExportService.exportCsv(startDate, endDate, after, limit));
+            }
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(orderExportService.exportNdjson(startDate, endDate, after, limit)
+                            .doOnError(error -> logger.error("Error exporting orders: {}", error.getMessage(), error)));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid export request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/health")
     public Mono<ResponseEntity<Map<String, String>>> healthCheck() {
         logger.debug("Health check requested for order service");
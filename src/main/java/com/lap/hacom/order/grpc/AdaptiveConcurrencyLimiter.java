@@ -0,0 +1,124 @@
+package com.lap.hacom.order.grpc;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gradient-style adaptive concurrency limit for order admission. A slow-moving average of
+ * processing latency is the no-load baseline and a fast-moving one tracks current latency;
+ * while current latency stays near the baseline the limit grows by a small queue allowance,
+ * and as queueing pushes latency up the limit shrinks in proportion. Failed orders cut the
+ * limit multiplicatively.
+ */
+@Component
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+    // Latency may rise this much over the baseline before the limit starts shrinking
+    private static final double TOLERANCE = 1.5;
+    private static final double FAILURE_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    @Autowired
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${orders.admission.initial-limit:256}") int initialLimit,
+                                      @Value("${orders.admission.min-limit:16}") int minLimit,
+                                      @Value("${orders.admission.max-limit:4096}") int maxLimit,
+                                      @Value("${orders.admission.smoothing:0.2}") double smoothing) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+
+        Gauge.builder("hacom.grpc.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on orders in flight")
+                .register(meterRegistry);
+        Gauge.builder("hacom.grpc.concurrency.inflight", inFlight, AtomicInteger::get)
+                .description("Orders admitted and not yet answered")
+                .register(meterRegistry);
+
+        logger.info("Adaptive concurrency limiter initialized with limit {} (min {}, max {})",
+                initialLimit, minLimit, maxLimit);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a permit and feeds the observed latency into the limit. A failed order, including
+     * one that was refused downstream, counts as an overload signal.
+     */
+    public void release(long rttNanos, boolean succeeded) {
+        onSample(rttNanos, inFlight.getAndDecrement(), succeeded);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtRelease, boolean succeeded) {
+        if (!succeeded) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * FAILURE_BACKOFF);
+            limit = (int) estimatedLimit;
+            return;
+        }
+
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+
+        shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+        longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+
+        // After a sustained latency drop let the baseline catch up faster
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        // Don't grow the limit while the load is well below it; the latency says nothing about it
+        if (inFlightAtRelease < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        double queueAllowance = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueAllowance;
+
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+        limit = (int) estimatedLimit;
+    }
+}
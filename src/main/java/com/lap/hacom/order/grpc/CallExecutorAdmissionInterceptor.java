@@ -0,0 +1,49 @@
+package com.lap.hacom.order.grpc;
+
+import com.lap.hacom.order.config.GrpcConfig;
+import com.lap.hacom.order.config.GrpcTransportConfig;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Refuses new calls with RESOURCE_EXHAUSTED while the BOUNDED call executor has
+ * {@code executorQueueCapacity} tasks waiting. Saturation is handled here, when a call starts,
+ * because the executor itself must accept every callback of the calls it already runs.
+ */
+@GrpcGlobalServerInterceptor
+public class CallExecutorAdmissionInterceptor implements ServerInterceptor {
+
+    private final GrpcConfig grpcConfig;
+    private final int queueCapacity;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public CallExecutorAdmissionInterceptor(GrpcConfig grpcConfig, GrpcTransportConfig transportConfig,
+                                            MeterRegistry meterRegistry) {
+        this.grpcConfig = grpcConfig;
+        this.queueCapacity = transportConfig.getExecutorQueueCapacity();
+        this.rejectedCounter = Counter.builder("hacom.grpc.shed.total")
+                .description("Order requests rejected or dropped by admission control")
+                .tag("reason", "executor_saturated")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (grpcConfig.queuedCallTasks() >= queueCapacity) {
+            rejectedCounter.increment();
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("Server is overloaded, retry later"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        return next.startCall(call, headers);
+    }
+}
@@ -0,0 +1,75 @@
+package com.lap.hacom.order.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts every incoming call and times it from arrival until the server closes it. Timers are
+ * tagged by method and status code only, both of which are bounded by the service definition.
+ */
+@GrpcGlobalServerInterceptor
+public class GrpcMetricsInterceptor implements ServerInterceptor {
+
+    private final Counter grpcRequestCounter;
+    private final MeterRegistry meterRegistry;
+
+    // Per method, one timer per status code indexed by Status.Code#value()
+    private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GrpcMetricsInterceptor(@Qualifier("grpcRequestCounter") Counter grpcRequestCounter,
+                                  MeterRegistry meterRegistry) {
+        this.grpcRequestCounter = grpcRequestCounter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        grpcRequestCounter.increment();
+
+        long startNanos = System.nanoTime();
+        String method = call.getMethodDescriptor().getFullMethodName();
+        Timer[] methodTimers = timers.computeIfAbsent(method, ignored -> new Timer[Status.Code.values().length]);
+
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                timer(methodTimers, method, status.getCode()).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                super.close(status, trailers);
+            }
+        }, headers);
+    }
+
+    private Timer timer(Timer[] methodTimers, String method, Status.Code code) {
+        Timer timer = methodTimers[code.value()];
+        if (timer == null) {
+            // Registration is idempotent, so a racing thread just gets the same timer back
+            timer = Timer.builder("hacom.grpc.server.latency")
+                    .description("End-to-end latency of gRPC calls, from arrival until the call is closed")
+                    .tag("method", method)
+                    .tag("status", code.name())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry);
+            methodTimers[code.value()] = timer;
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,136 @@
+package com.lap.hacom.order.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Inbound side of the streaming order RPCs. Automatic inbound flow control is disabled and
+ * at most {@code maxInFlight} orders are requested from the client at a time; a new one is
+ * requested only when an earlier order finishes (and, for bidi streams, when the outbound
+ * side is ready), so a fast client cannot make the server buffer without limit.
+ */
+class OrderRequestStreamObserver implements StreamObserver<CreateOrderRequest> {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderRequestStreamObserver.class);
+
+    private final ServerCallStreamObserver<?> call;
+    private final BiConsumer<CreateOrderRequest, StreamObserver<CreateOrderResponse>> dispatcher;
+    private final Consumer<CreateOrderResponse> resultConsumer;
+    private final Runnable drainedCallback;
+    private final boolean waitForOutboundReady;
+
+    private int inFlight;
+    private int deferredRequests;
+    private boolean halfClosed;
+    private boolean finished;
+
+    OrderRequestStreamObserver(ServerCallStreamObserver<?> call, int maxInFlight, boolean waitForOutboundReady,
+                               BiConsumer<CreateOrderRequest, StreamObserver<CreateOrderResponse>> dispatcher,
+                               Consumer<CreateOrderResponse> resultConsumer, Runnable drainedCallback) {
+        this.call = call;
+        this.dispatcher = dispatcher;
+        this.resultConsumer = resultConsumer;
+        this.drainedCallback = drainedCallback;
+        this.waitForOutboundReady = waitForOutboundReady;
+
+        call.disableAutoRequest();
+        call.setOnReadyHandler(this::onReady);
+        call.setOnCancelHandler(this::onCancel);
+        call.request(maxInFlight);
+    }
+
+    @Override
+    public void onNext(CreateOrderRequest request) {
+        synchronized (this) {
+            inFlight++;
+        }
+        dispatcher.accept(request, new SingleOrderObserver(request.getOrderId()));
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        logger.warn("Order stream failed on the client side: {}", t.getMessage());
+        finished = true;
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        halfClosed = true;
+        if (inFlight == 0) {
+            finish();
+        }
+    }
+
+    private synchronized void onOrderFinished(CreateOrderResponse response) {
+        inFlight--;
+        if (finished) {
+            return;
+        }
+
+        resultConsumer.accept(response);
+
+        if (halfClosed) {
+            if (inFlight == 0) {
+                finish();
+            }
+            return;
+        }
+
+        if (!waitForOutboundReady || call.isReady()) {
+            call.request(1);
+        } else {
+            deferredRequests++;
+        }
+    }
+
+    private synchronized void onReady() {
+        if (deferredRequests > 0 && !halfClosed && !finished) {
+            call.request(deferredRequests);
+            deferredRequests = 0;
+        }
+    }
+
+    private synchronized void onCancel() {
+        logger.warn("Order stream cancelled with {} orders in flight", inFlight);
+        finished = true;
+    }
+
+    private void finish() {
+        finished = true;
+        drainedCallback.run();
+    }
+
+    // Collects the single response the actor pipeline produces for one order
+    private final class SingleOrderObserver implements StreamObserver<CreateOrderResponse> {
+
+        private final String orderId;
+        private CreateOrderResponse response;
+
+        private SingleOrderObserver(String orderId) {
+            this.orderId = orderId;
+        }
+
+        @Override
+        public void onNext(CreateOrderResponse value) {
+            response = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            onOrderFinished(CreateOrderResponse.newBuilder()
+                    .setOrderId(orderId)
+                    .setStatus("FAILED")
+                    .build());
+        }
+
+        @Override
+        public void onCompleted() {
+            onOrderFinished(response);
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.lap.hacom.order.grpc;
 
-import akka.actor.ActorRef;
-import akka.actor.ActorSystem;
 import com.lap.hacom.order.actor.OrderProcessorActor;
-import com.lap.hacom.order.repository.OrderRepository;
-import com.lap.hacom.order.service.SmppService;
+import com.lap.hacom.order.actor.OrderProcessorRouter;
+import com.lap.hacom.order.service.OrderEventBus;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,33 +24,41 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderServiceImpl.class);
 
-    private final ActorSystem actorSystem;
-    private final OrderRepository orderRepository;
-    private final SmppService smppService;
-    private final ActorRef orderProcessorActor;
+    private final OrderProcessorRouter orderProcessorRouter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final OrderEventBus orderEventBus;
+    private final int streamMaxInFlight;
+    private final int batchMaxFailures;
+
+    private final Counter limitShedCounter;
+    private final Counter deadlineShedCounter;
+    private final Counter mailboxShedCounter;
 
     @Autowired
-    public OrderServiceImpl(ActorSystem actorSystem, OrderRepository orderRepository,
-                            SmppService smppService, MeterRegistry meterRegistry) {
-        this.actorSystem = actorSystem;
-        this.orderRepository = orderRepository;
-        this.smppService = smppService;
-
-        // Create order processor actor
-        this.orderProcessorActor = actorSystem.actorOf(
-                OrderProcessorActor.props(orderRepository, smppService, meterRegistry),
-                "order-processor-actor"
-        );
+    public OrderServiceImpl(OrderProcessorRouter orderProcessorRouter, AdaptiveConcurrencyLimiter concurrencyLimiter,
+                            OrderEventBus orderEventBus, MeterRegistry meterRegistry,
+                            @Value("${orders.stream.max-in-flight:64}") int streamMaxInFlight,
+                            @Value("${orders.stream.batch-max-failures:100}") int batchMaxFailures) {
+        this.orderProcessorRouter = orderProcessorRouter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.orderEventBus = orderEventBus;
+        this.streamMaxInFlight = streamMaxInFlight;
+        this.batchMaxFailures = batchMaxFailures;
+        this.limitShedCounter = shedCounter(meterRegistry, "concurrency_limit");
+        this.deadlineShedCounter = shedCounter(meterRegistry, "deadline_expired");
+        this.mailboxShedCounter = shedCounter(meterRegistry, "mailbox_full");
 
         logger.info("OrderService gRPC implementation initialized with actor system");
     }
 
     @Override
     public void createOrder(CreateOrderRequest request, StreamObserver<CreateOrderResponse> responseObserver) {
-        logger.info("Received gRPC order creation request for order ID: {}", request.getOrderId());
+        logger.debug("Received gRPC order creation request for order ID: {}", request.getOrderId());
         logger.debug("Order details - Customer: {}, Phone: {}, Items: {}",
                 request.getCustomerId(), request.getCustomerPhoneNumber(), request.getItemsList());
 
+        // Once admitted, every answer goes through the admitted observer so the permit is released
+        StreamObserver<CreateOrderResponse> answerObserver = responseObserver;
         try {
             // Validate request
             if (!isValidRequest(request)) {
@@ -55,6 +67,27 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
                 return;
             }
 
+            // Skip work nobody is waiting for any more
+            Deadline deadline = Context.current().getDeadline();
+            if (deadline != null && deadline.isExpired()) {
+                deadlineShedCounter.increment();
+                responseObserver.onError(Status.DEADLINE_EXCEEDED
+                        .withDescription("Deadline expired before the order was admitted")
+                        .asRuntimeException());
+                return;
+            }
+
+            // Fail fast instead of queueing once the adaptive limit is reached
+            if (!concurrencyLimiter.tryAcquire()) {
+                limitShedCounter.increment();
+                responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Too many orders in flight, retry later")
+                        .asRuntimeException());
+                return;
+            }
+            StreamObserver<CreateOrderResponse> admittedObserver = new AdmittedOrderObserver(responseObserver);
+            answerObserver = admittedObserver;
+
             // gRPC repeated field to List
             List<String> items = new ArrayList<>(request.getItemsList());
 
@@ -65,23 +98,98 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
                             request.getCustomerId(),
                             request.getCustomerPhoneNumber(),
                             items,
-                            responseObserver
+                            request.getWaitForNotification(),
+                            deadline,
+                            admittedObserver
                     );
 
-            // Send message
+            // Send message to the customer's shard
             // async process
-            orderProcessorActor.tell(message, ActorRef.noSender());
+            if (!orderProcessorRouter.route(message)) {
+                mailboxShedCounter.increment();
+                admittedObserver.onError(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Order processor shard is full, retry later")
+                        .asRuntimeException());
+                return;
+            }
 
-            logger.info("Order processing message sent to actor for order: {}", request.getOrderId());
+            logger.debug("Order processing message sent to actor for order: {}", request.getOrderId());
 
         } catch (Exception e) {
             logger.error("Unexpected error handling gRPC request for order {}: {}",
                     request.getOrderId(), e.getMessage(), e);
-            sendErrorResponse(responseObserver, request.getOrderId(), "FAILED");
+            sendErrorResponse(answerObserver, request.getOrderId(), "FAILED");
         }
     }
 
-    private boolean isValidRequest(CreateOrderRequest request) {
+    @Override
+    public StreamObserver<CreateOrderRequest> batchCreateOrders(StreamObserver<BatchCreateOrdersResponse> responseObserver) {
+        logger.info("Received gRPC batch order creation stream");
+
+        // Only counts and a capped list of failures are kept, so the summary stays small however long the stream
+        BatchCreateOrdersResponse.Builder batchResponse = BatchCreateOrdersResponse.newBuilder();
+
+        return new OrderRequestStreamObserver(
+                (ServerCallStreamObserver<BatchCreateOrdersResponse>) responseObserver,
+                streamMaxInFlight,
+                false,
+                this::createOrder,
+                response -> {
+                    if ("COMPLETED".equals(response.getStatus())) {
+                        batchResponse.setCompletedCount(batchResponse.getCompletedCount() + 1);
+                        return;
+                    }
+                    batchResponse.setFailedCount(batchResponse.getFailedCount() + 1);
+                    if (batchResponse.getFailuresCount() < batchMaxFailures) {
+                        batchResponse.addFailures(response);
+                    }
+                },
+                () -> {
+                    logger.info("Batch order stream finished: {} completed, {} failed",
+                            batchResponse.getCompletedCount(), batchResponse.getFailedCount());
+                    responseObserver.onNext(batchResponse.build());
+                    responseObserver.onCompleted();
+                });
+    }
+
+    @Override
+    public StreamObserver<CreateOrderRequest> streamCreateOrders(StreamObserver<CreateOrderResponse> responseObserver) {
+        logger.info("Received gRPC bidirectional order creation stream");
+
+        return new OrderRequestStreamObserver(
+                (ServerCallStreamObserver<CreateOrderResponse>) responseObserver,
+                streamMaxInFlight,
+                true,
+                this::createOrder,
+                responseObserver::onNext,
+                responseObserver::onCompleted);
+    }
+
+    @Override
+    public void watchOrders(WatchOrdersRequest request, StreamObserver<OrderStatusUpdate> responseObserver) {
+        boolean byOrder = !request.getOrderId().isBlank();
+        boolean byCustomer = !request.getCustomerId().isBlank();
+        if (byOrder == byCustomer) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Exactly one of order_id or customer_id is required")
+                    .asRuntimeException());
+            return;
+        }
+
+        logger.debug("Watching orders for {}", byOrder ? request.getOrderId() : request.getCustomerId());
+
+        (byOrder ? orderEventBus.watchOrder(request.getOrderId()) : orderEventBus.watchCustomer(request.getCustomerId()))
+                .subscribe(new OrderWatchSubscriber((ServerCallStreamObserver<OrderStatusUpdate>) responseObserver));
+    }
+
+    private static Counter shedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("hacom.grpc.shed.total")
+                .description("Order requests rejected or dropped by admission control")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    static boolean isValidRequest(CreateOrderRequest request) {
         if (request.getOrderId() == null || request.getOrderId().trim().isEmpty()) {
             logger.warn("Order ID is missing or empty");
             return false;
@@ -124,4 +232,34 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
-}
\ No newline at end of file
+
+    // Holds a limiter permit from admission until the order is answered and feeds its latency back
+    private final class AdmittedOrderObserver implements StreamObserver<CreateOrderResponse> {
+
+        private final StreamObserver<CreateOrderResponse> delegate;
+        private final long admittedAtNanos = System.nanoTime();
+        private boolean succeeded;
+
+        private AdmittedOrderObserver(StreamObserver<CreateOrderResponse> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onNext(CreateOrderResponse response) {
+            succeeded = !"FAILED".equals(response.getStatus());
+            delegate.onNext(response);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            concurrencyLimiter.release(System.nanoTime() - admittedAtNanos, false);
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            concurrencyLimiter.release(System.nanoTime() - admittedAtNanos, succeeded);
+            delegate.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.lap.hacom.order.grpc;
+
+import com.lap.hacom.order.model.OrderStatusEvent;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbound side of WatchOrders. Events are requested one at a time and only while the call
+ * is ready, so a slow client is held back by gRPC flow control and its excess events are
+ * dropped by the event bus instead of piling up in the transport buffers.
+ */
+class OrderWatchSubscriber extends BaseSubscriber<OrderStatusEvent> {
+
+    private final ServerCallStreamObserver<OrderStatusUpdate> call;
+    private final AtomicBoolean waitingForReady = new AtomicBoolean();
+
+    OrderWatchSubscriber(ServerCallStreamObserver<OrderStatusUpdate> call) {
+        this.call = call;
+        call.setOnReadyHandler(this::onReady);
+        call.setOnCancelHandler(this::dispose);
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        requestIfReady();
+    }
+
+    @Override
+    protected void hookOnNext(OrderStatusEvent event) {
+        call.onNext(OrderStatusUpdate.newBuilder()
+                .setOrderId(event.getOrderId())
+                .setCustomerId(event.getCustomerId())
+                .setStatus(event.getStatus())
+                .setTimestamp(event.getTs() != null ? event.getTs().toString() : "")
+                .build());
+        requestIfReady();
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        call.onCompleted();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        call.onError(throwable);
+    }
+
+    private void requestIfReady() {
+        if (call.isReady()) {
+            request(1);
+            return;
+        }
+        // Re-check after parking: the call may have become ready before the flag was set
+        waitingForReady.set(true);
+        if (call.isReady() && waitingForReady.compareAndSet(true, false)) {
+            request(1);
+        }
+    }
+
+    private void onReady() {
+        if (waitingForReady.compareAndSet(true, false)) {
+            request(1);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.lap.hacom.order.grpc;
+
+import com.google.protobuf.MessageLite;
+import com.lap.hacom.order.config.GrpcTransportConfig;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Compresses responses on calls whose client advertised the configured encoding in
+ * {@code grpc-accept-encoding}. Small messages, such as unary order responses, are still sent
+ * uncompressed since gzip only costs CPU on them.
+ */
+@GrpcGlobalServerInterceptor
+public class ResponseCompressionInterceptor implements ServerInterceptor {
+
+    private static final Metadata.Key<String> ACCEPT_ENCODING =
+            Metadata.Key.of("grpc-accept-encoding", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final String encoding;
+    private final int minBytes;
+
+    @Autowired
+    public ResponseCompressionInterceptor(GrpcTransportConfig transportConfig) {
+        this.encoding = transportConfig.getCompression();
+        this.minBytes = transportConfig.getCompressionMinBytes();
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (!accepts(headers.get(ACCEPT_ENCODING))) {
+            return next.startCall(call, headers);
+        }
+
+        call.setCompression(encoding);
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                if (message instanceof MessageLite messageLite) {
+                    super.setMessageCompression(messageLite.getSerializedSize() >= minBytes);
+                }
+                super.sendMessage(message);
+            }
+        }, headers);
+    }
+
+    private boolean accepts(String acceptEncoding) {
+        if (acceptEncoding == null || "identity".equals(encoding)) {
+            return false;
+        }
+        for (String accepted : acceptEncoding.split(",")) {
+            if (accepted.trim().equals(encoding)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,14 @@
+package com.lap.hacom.order.journal;
+
+/**
+ * The journal can't take the append right now: its queue is full, or too many segments are
+ * still waiting to be replayed. The order was not accepted.
+ */
+public class JournalFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JournalFullException(String message) {
+        super(message);
+    }
+}
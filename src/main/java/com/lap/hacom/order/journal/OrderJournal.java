@@ -0,0 +1,475 @@
+package com.lap.hacom.order.journal;
+
+import com.lap.hacom.order.config.JournalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of accepted orders in memory-mapped segment files. Records are
+ * {@code [int length][int crc32c][payload]} at a global position of
+ * {@code segment index * segment size + offset}; a record that doesn't fit the rest of a segment
+ * starts the next one, and a zero length marks the unused tail.
+ *
+ * A single writer thread takes queued appends in batches, copies them into the mapping and
+ * forces the touched segments to disk once per batch (group commit); an append completes only
+ * after that. The reader side, used by the replayer, sees durable records only. Progress is
+ * kept in a checkpoint file, and segments wholly before the checkpoint are deleted.
+ *
+ * On open the log is scanned from the checkpoint: the first record with a bad length or CRC,
+ * the tail of a write cut short by a crash, ends it and everything after is discarded. Such a
+ * record was never acknowledged.
+ *
+ * Each record is appended under a key, the orderId, and durable records not replayed yet can
+ * be looked up by it. The replayer rebuilds that index after a restart.
+ */
+@Component
+public class OrderJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournal.class);
+
+    static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    public record Entry(long position, long nextPosition, byte[] payload) {
+    }
+
+    private record Append(String key, byte[] payload, CompletableFuture<Long> done) {
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final JournalConfig journalConfig;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Append> appends;
+
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // Position of each durable record not replayed yet, by key
+    private final Map<String, Long> unreplayed = new ConcurrentHashMap<>();
+    private volatile long durablePosition;
+    private volatile long checkpointPosition;
+
+    // Writer thread only
+    private long writePosition;
+
+    private Thread writer;
+    private volatile boolean running;
+
+    @Autowired
+    public OrderJournal(JournalConfig journalConfig) {
+        this.journalConfig = journalConfig;
+        this.directory = Path.of(journalConfig.getDirectory());
+        this.segmentSize = journalConfig.getSegmentSizeBytes();
+        this.maxBatch = journalConfig.getGroupCommitMaxBatch();
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(journalConfig.getGroupCommitMaxWaitMicros());
+        this.appends = new ArrayBlockingQueue<>(journalConfig.getQueueCapacity());
+    }
+
+    public boolean isEnabled() {
+        return journalConfig.isEnabled();
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (journalConfig.isEnabled()) {
+            open();
+        }
+    }
+
+    /**
+     * Recovers the log from disk and starts the writer. Called on startup when the journal is
+     * enabled.
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        checkpointPosition = readCheckpoint();
+
+        long checkpointSegment = checkpointPosition / segmentSize;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                long index = Long.parseLong(path.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+                if (index < checkpointSegment) {
+                    Files.delete(path);
+                } else {
+                    segments.put(index, mapSegment(index));
+                }
+            }
+        }
+
+        writePosition = recover(checkpointPosition);
+        durablePosition = writePosition;
+
+        running = true;
+        writer = new Thread(this::writeLoop, "order-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        logger.info("Order journal opened in {}: checkpoint {}, end {}, {} segments",
+                directory.toAbsolutePath(), checkpointPosition, writePosition, segments.size());
+    }
+
+    /**
+     * Queues the payload for the next group commit. The future completes with the record's
+     * position once it is on disk, or fails with {@link JournalFullException} without the order
+     * being accepted.
+     */
+    public CompletableFuture<Long> append(String key, byte[] payload) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Order journal is not open"));
+        }
+        if (payload.length == 0 || payload.length > segmentSize - HEADER_BYTES) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Journal record of " + payload.length + " bytes does not fit a segment"));
+        }
+
+        Append append = new Append(key, payload, new CompletableFuture<>());
+        if (!appends.offer(append)) {
+            return CompletableFuture.failedFuture(new JournalFullException("Order journal queue is full"));
+        }
+        return append.done();
+    }
+
+    /**
+     * Durable records from the given position on, at most maxRecords of them.
+     */
+    public List<Entry> read(long from, int maxRecords) {
+        List<Entry> entries = new ArrayList<>();
+        long end = durablePosition;
+        long position = from;
+
+        while (entries.size() < maxRecords && position < end) {
+            long index = position / segmentSize;
+            int offset = (int) (position % segmentSize);
+            Segment segment = segments.get(index);
+            if (segment == null) {
+                throw new IllegalStateException("Journal segment " + index + " missing at position " + position);
+            }
+
+            int length = offset + HEADER_BYTES > segmentSize ? 0 : segment.buffer.getInt(offset);
+            if (length == 0) {
+                position = (index + 1) * segmentSize;
+                continue;
+            }
+
+            byte[] payload = new byte[length];
+            segment.buffer.get(offset + HEADER_BYTES, payload);
+            if (crc(payload) != segment.buffer.getInt(offset + 4)) {
+                throw new IllegalStateException("Corrupt journal record at position " + position);
+            }
+
+            long next = position + HEADER_BYTES + length;
+            entries.add(new Entry(position, next, payload));
+            position = next;
+        }
+        return entries;
+    }
+
+    /**
+     * Records that everything before the position has been replayed, and deletes the
+     * segments that only hold such records. Called from one thread at a time.
+     */
+    public void checkpoint(long position) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, position));
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        checkpointPosition = position;
+
+        long checkpointSegment = position / segmentSize;
+        for (Map.Entry<Long, Segment> entry : segments.headMap(checkpointSegment, false).entrySet()) {
+            segments.remove(entry.getKey());
+            entry.getValue().channel.close();
+            Files.deleteIfExists(entry.getValue().path);
+        }
+    }
+
+    /**
+     * Payload of the durable, not yet replayed record appended under the key.
+     */
+    public Optional<byte[]> find(String key) {
+        Long position = unreplayed.get(key);
+        if (position == null) {
+            return Optional.empty();
+        }
+        try {
+            List<Entry> entries = read(position, 1);
+            return entries.isEmpty() || entries.get(0).position() != position
+                    ? Optional.empty()
+                    : Optional.of(entries.get(0).payload());
+        } catch (IllegalStateException e) {
+            // Replayed and its segment deleted meanwhile
+            return Optional.empty();
+        }
+    }
+
+    // Recovery: registers a record found on disk after a restart
+    public void index(String key, long position) {
+        unreplayed.put(key, position);
+    }
+
+    // The record is in Mongo; lookups go there from now on
+    public void replayed(String key) {
+        unreplayed.remove(key);
+    }
+
+    public int unreplayedCount() {
+        return unreplayed.size();
+    }
+
+    public long checkpointPosition() {
+        return checkpointPosition;
+    }
+
+    public long durablePosition() {
+        return durablePosition;
+    }
+
+    // Bytes accepted but not replayed yet
+    public long backlogBytes() {
+        return durablePosition - checkpointPosition;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        segments.clear();
+        logger.info("Order journal closed at position {}", durablePosition);
+    }
+
+    private void writeLoop() {
+        List<Append> batch = new ArrayList<>(maxBatch);
+        List<Long> positions = new ArrayList<>(maxBatch);
+        Set<Segment> touched = new LinkedHashSet<>();
+
+        while (running || !appends.isEmpty()) {
+            long batchStart = writePosition;
+            try {
+                Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+
+                for (Append append : batch) {
+                    positions.add(write(append.payload(), touched));
+                }
+                for (Segment segment : touched) {
+                    segment.buffer.force();
+                }
+                durablePosition = writePosition;
+
+                for (int i = 0; i < batch.size(); i++) {
+                    Long position = positions.get(i);
+                    if (position != null) {
+                        unreplayed.put(batch.get(i).key(), position);
+                        batch.get(i).done().complete(position);
+                    } else {
+                        batch.get(i).done().completeExceptionally(new JournalFullException("Order journal has "
+                                + journalConfig.getMaxSegments() + " segments waiting for replay"));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Order journal write failed: {}", e.getMessage(), e);
+                rollback(batchStart);
+                batch.forEach(append -> append.done().completeExceptionally(e));
+            } finally {
+                batch.clear();
+                positions.clear();
+                touched.clear();
+            }
+        }
+    }
+
+    // Takes what is already queued, then waits up to the group commit window for more
+    private void fillBatch(List<Append> batch) throws InterruptedException {
+        appends.drainTo(batch, maxBatch - batch.size());
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Append next = appends.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            appends.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    // Returns null, failing the append, when the journal is too far ahead of the replayer
+    private Long write(byte[] payload, Set<Segment> touched) throws IOException {
+        long index = writePosition / segmentSize;
+        int offset = (int) (writePosition % segmentSize);
+
+        if (offset + HEADER_BYTES + payload.length > segmentSize) {
+            index++;
+            offset = 0;
+        }
+
+        Segment segment = segments.get(index);
+        if (segment == null) {
+            if (index - checkpointPosition / segmentSize >= journalConfig.getMaxSegments()) {
+                return null;
+            }
+            segment = mapSegment(index);
+            segments.put(index, segment);
+        }
+
+        segment.buffer.put(offset + HEADER_BYTES, payload);
+        segment.buffer.putInt(offset + 4, crc(payload));
+        segment.buffer.putInt(offset, payload.length);
+        touched.add(segment);
+
+        long position = index * segmentSize + offset;
+        writePosition = position + HEADER_BYTES + payload.length;
+        return position;
+    }
+
+    // Zeroes what a failed batch wrote past the durable end so recovery can't pick it up
+    private void rollback(long batchStart) {
+        for (long position = batchStart; position < writePosition; ) {
+            long index = position / segmentSize;
+            int offset = (int) (position % segmentSize);
+            Segment segment = segments.get(index);
+            int end = index == writePosition / segmentSize ? (int) (writePosition % segmentSize) : segmentSize;
+            if (segment != null) {
+                for (int i = offset; i < end; i++) {
+                    segment.buffer.put(i, (byte) 0);
+                }
+            }
+            position = (index + 1) * segmentSize;
+        }
+        writePosition = batchStart;
+    }
+
+    private long recover(long from) throws IOException {
+        long position = from;
+        while (true) {
+            long index = position / segmentSize;
+            int offset = (int) (position % segmentSize);
+            Segment segment = segments.get(index);
+            if (segment == null) {
+                segment = mapSegment(index);
+                segments.put(index, segment);
+                return position;
+            }
+
+            int length = offset + HEADER_BYTES > segmentSize ? 0 : segment.buffer.getInt(offset);
+            if (length == 0 && segments.containsKey(index + 1)) {
+                position = (index + 1) * segmentSize;
+                continue;
+            }
+
+            boolean valid = length > 0 && offset + HEADER_BYTES + length <= segmentSize;
+            if (valid) {
+                byte[] payload = new byte[length];
+                segment.buffer.get(offset + HEADER_BYTES, payload);
+                valid = crc(payload) == segment.buffer.getInt(offset + 4);
+            }
+            if (!valid) {
+                truncate(index, offset);
+                return position;
+            }
+            position += HEADER_BYTES + length;
+        }
+    }
+
+    // Clears the torn tail of the segment and drops any segment after it
+    private void truncate(long index, int offset) throws IOException {
+        Segment segment = segments.get(index);
+        for (int i = offset; i < segmentSize; i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+        segment.buffer.force();
+
+        for (Map.Entry<Long, Segment> entry : segments.tailMap(index, false).entrySet()) {
+            segments.remove(entry.getKey());
+            entry.getValue().channel.close();
+            Files.deleteIfExists(entry.getValue().path);
+        }
+    }
+
+    private Segment mapSegment(long index) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(path)).getLong();
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,82 @@
+package com.lap.hacom.order.journal;
+
+import com.lap.hacom.order.model.Order;
+import org.bson.types.ObjectId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary form of an {@link Order} in the journal. The _id is assigned before the append so a
+ * replayed order keeps it, and a replay repeated after a crash is caught as a duplicate key.
+ */
+public final class OrderJournalCodec {
+
+    private static final byte VERSION = 1;
+
+    private OrderJournalCodec() {
+    }
+
+    public static byte[] encode(Order order) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.write(order.get_id().toByteArray());
+            out.writeUTF(order.getOrderId());
+            out.writeUTF(order.getCustomerId());
+            out.writeUTF(order.getCustomerPhoneNumber());
+            out.writeUTF(order.getStatus());
+
+            List<String> items = order.getItems() == null ? List.of() : order.getItems();
+            out.writeInt(items.size());
+            for (String item : items) {
+                out.writeUTF(item);
+            }
+
+            out.writeLong(order.getTs().toInstant().toEpochMilli());
+            out.writeInt(order.getTs().getOffset().getTotalSeconds());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Order decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unknown journal record version " + version);
+            }
+
+            byte[] id = new byte[12];
+            in.readFully(id);
+            String orderId = in.readUTF();
+            String customerId = in.readUTF();
+            String phone = in.readUTF();
+            String status = in.readUTF();
+
+            int itemCount = in.readInt();
+            List<String> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                items.add(in.readUTF());
+            }
+
+            Instant instant = Instant.ofEpochMilli(in.readLong());
+            ZoneOffset offset = ZoneOffset.ofTotalSeconds(in.readInt());
+
+            return new Order(new ObjectId(id), orderId, customerId, phone, status, items,
+                    OffsetDateTime.ofInstant(instant, offset));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
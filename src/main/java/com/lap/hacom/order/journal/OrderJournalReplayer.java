@@ -0,0 +1,142 @@
+package com.lap.hacom.order.journal;
+
+import com.lap.hacom.order.actor.OrderProcessorActor;
+import com.lap.hacom.order.config.JournalConfig;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OutboxMessage;
+import com.lap.hacom.order.service.OrderBatchWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Writes journaled orders to Mongo, with their outbox entries, through the
+ * {@link OrderBatchWriter}, a batch at a time, and checkpoints the journal after each batch.
+ * A batch interrupted by a crash is replayed from the last checkpoint; its orders already in
+ * Mongo fail with a duplicate key, so nothing is stored twice, and get their outbox entry
+ * written again in case the crash came between the order and the outbox write.
+ */
+@Service
+public class OrderJournalReplayer {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderJournalReplayer.class);
+
+    private final OrderJournal orderJournal;
+    private final OrderBatchWriter orderBatchWriter;
+    private final JournalConfig journalConfig;
+
+    private final Counter replayedCounter;
+
+    private Disposable poller;
+
+    @Autowired
+    public OrderJournalReplayer(OrderJournal orderJournal, OrderBatchWriter orderBatchWriter,
+                                JournalConfig journalConfig, MeterRegistry meterRegistry) {
+        this.orderJournal = orderJournal;
+        this.orderBatchWriter = orderBatchWriter;
+        this.journalConfig = journalConfig;
+
+        this.replayedCounter = Counter.builder("hacom.orders.journal.replayed.total")
+                .description("Journaled orders written to Mongo")
+                .register(meterRegistry);
+        meterRegistry.gauge("hacom.orders.journal.backlog.bytes", orderJournal, OrderJournal::backlogBytes);
+        meterRegistry.gauge("hacom.orders.journal.backlog.orders", orderJournal, OrderJournal::unreplayedCount);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!journalConfig.isEnabled()) {
+            logger.info("Order journal disabled");
+            return;
+        }
+
+        indexUnreplayed();
+
+        logger.info("Replaying the order journal into Mongo every {} ms, batches of {}",
+                journalConfig.getReplayIntervalMs(), journalConfig.getReplayBatchSize());
+
+        poller = Flux.interval(Duration.ofMillis(journalConfig.getReplayIntervalMs()))
+                .onBackpressureDrop()
+                .concatMap(tick -> drain()
+                        .onErrorResume(error -> {
+                            logger.error("Error replaying the order journal: {}", error.getMessage(), error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    // Makes orders journaled before a restart visible to status lookups again
+    void indexUnreplayed() {
+        long position = orderJournal.checkpointPosition();
+        int indexed = 0;
+        List<OrderJournal.Entry> batch;
+        while (!(batch = orderJournal.read(position, journalConfig.getReplayBatchSize())).isEmpty()) {
+            for (OrderJournal.Entry entry : batch) {
+                orderJournal.index(OrderJournalCodec.decode(entry.payload()).getOrderId(), entry.position());
+                indexed++;
+            }
+            position = batch.get(batch.size() - 1).nextPosition();
+        }
+        logger.info("{} journaled orders waiting for replay", indexed);
+    }
+
+    // Replays batches until one comes back short
+    Mono<Void> drain() {
+        return replayBatch()
+                .repeat()
+                .takeUntil(replayed -> replayed < journalConfig.getReplayBatchSize())
+                .then();
+    }
+
+    private Mono<Integer> replayBatch() {
+        List<OrderJournal.Entry> batch = orderJournal.read(orderJournal.checkpointPosition(),
+                journalConfig.getReplayBatchSize());
+        if (batch.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        long next = batch.get(batch.size() - 1).nextPosition();
+        return Flux.fromIterable(batch)
+                .flatMap(entry -> replay(OrderJournalCodec.decode(entry.payload())))
+                .then(Mono.fromCallable(() -> {
+                    orderJournal.checkpoint(next);
+                    return batch.size();
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<Void> replay(Order order) {
+        OutboxMessage outbox = OrderProcessorActor.outboxFor(order);
+
+        // The upsert only creates the entry if it's missing, so one already dispatched stays dispatched
+        return orderBatchWriter.insert(order, outbox)
+                .then()
+                .onErrorResume(DuplicateKeyException.class, duplicate -> {
+                    logger.debug("Journaled order {} was already written, ensuring its outbox entry", order.getOrderId());
+                    return orderBatchWriter.writeOutbox(outbox);
+                })
+                .doOnSuccess(ignored -> {
+                    orderJournal.replayed(order.getOrderId());
+                    replayedCounter.increment();
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (poller != null) {
+            poller.dispose();
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package com.lap.hacom.order.model;
 
+import com.lap.hacom.order.codec.OrderCodec;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.OffsetDateTime;
 import java.util.List;
 
+/**
+ * Stored and read through {@link OrderCodec}; the field names below only tell Spring Data how
+ * to map property names in queries and updates.
+ */
 @Data
 @AllArgsConstructor
 @Document(collection = "orders")
@@ -17,11 +23,22 @@ public class Order {
     @Id
     private ObjectId _id;
 
+    @Field(OrderCodec.ORDER_ID)
     private String orderId;
+
+    @Field(OrderCodec.CUSTOMER_ID)
     private String customerId;
+
+    @Field(OrderCodec.PHONE)
     private String customerPhoneNumber;
+
+    @Field(OrderCodec.STATUS)
     private String status;
+
+    @Field(OrderCodec.ITEMS)
     private List<String> items;
+
+    @Field(OrderCodec.TS)
     private OffsetDateTime ts;
 }
 
@@ -0,0 +1,28 @@
+package com.lap.hacom.order.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "order_count_rollups")
+public class OrderCountRollup {
+
+    // "<granularity>|<bucketStart epoch millis>|<dimension>"
+    @Id
+    private String _id;
+
+    private String granularity;
+    private Instant bucketStart;
+
+    // "all", "status:<status>" or "customer:<customerId>"
+    private String dimension;
+
+    private long count;
+}
@@ -0,0 +1,20 @@
+package com.lap.hacom.order.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Data
+@AllArgsConstructor
+public class OrderStatusEvent {
+
+    private String orderId;
+    private String customerId;
+    private String status;
+    private OffsetDateTime ts;
+
+    public static OrderStatusEvent of(Order order) {
+        return new OrderStatusEvent(order.getOrderId(), order.getCustomerId(), order.getStatus(), order.getTs());
+    }
+}
@@ -0,0 +1,33 @@
+package com.lap.hacom.order.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * SMS notification waiting to be dispatched, written together with its order. Keyed by
+ * orderId so an order can never queue two notifications. Dispatched entries are kept, marked
+ * with dispatchedAt, until a TTL index removes them, so writing the entry again for a retried
+ * order doesn't send a second SMS.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sms_outbox")
+public class OutboxMessage {
+
+    @Id
+    private String orderId;
+
+    private String phoneNumber;
+    private String message;
+    private Instant createdAt;
+    // Claimable once this has passed; a dispatcher pushes it forward while it holds the entry
+    private Instant leaseUntil;
+    private String leaseOwner;
+    private Instant dispatchedAt;
+}
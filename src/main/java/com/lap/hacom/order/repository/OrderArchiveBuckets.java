@@ -0,0 +1,115 @@
+package com.lap.hacom.order.repository;
+
+import com.lap.hacom.order.config.TieringConfig;
+import com.lap.hacom.order.model.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Names the archive collections ("orders_archive_yyyyMM", by UTC month of the order timestamp)
+ * and tells fan-out queries which collections can hold a given range. The list of existing
+ * buckets is cached for {@code orders.tiering.bucket-refresh-ms}, so a bucket another instance
+ * has just created may be missed for that long.
+ */
+@Component
+public class OrderArchiveBuckets {
+
+    public static final String ARCHIVE_PREFIX = "orders_archive_";
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM").withZone(ZoneOffset.UTC);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final String hotCollection;
+    private final long refreshIntervalNanos;
+
+    // Copy on write; bucket names sort chronologically
+    private volatile NavigableSet<String> known = Collections.emptyNavigableSet();
+    private volatile long refreshedAtNanos;
+    private volatile boolean loaded;
+
+    @Autowired
+    public OrderArchiveBuckets(ReactiveMongoTemplate mongoTemplate, TieringConfig tieringConfig) {
+        this.mongoTemplate = mongoTemplate;
+        this.hotCollection = mongoTemplate.getCollectionName(Order.class);
+        this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(tieringConfig.getBucketRefreshMs());
+    }
+
+    public String hotCollection() {
+        return hotCollection;
+    }
+
+    public String bucketFor(Instant ts) {
+        return ARCHIVE_PREFIX + MONTH.format(ts);
+    }
+
+    /**
+     * Existing archive buckets, newest first.
+     */
+    public Mono<List<String>> archives() {
+        return known().map(buckets -> List.copyOf(buckets.descendingSet()));
+    }
+
+    /**
+     * The hot collection followed by the archive buckets, newest first.
+     */
+    public Mono<List<String>> allCollections() {
+        return archives().map(this::withHotCollection);
+    }
+
+    /**
+     * The hot collection and the archive buckets that can hold orders with from <= ts < toExclusive.
+     */
+    public Mono<List<String>> collectionsFor(Instant from, Instant toExclusive) {
+        if (!from.isBefore(toExclusive)) {
+            return Mono.just(List.of(hotCollection));
+        }
+        String first = bucketFor(from);
+        String last = bucketFor(toExclusive.minusMillis(1));
+        return known().map(buckets -> withHotCollection(
+                List.copyOf(buckets.subSet(first, true, last, true).descendingSet())));
+    }
+
+    // Called by the archiver after writing to a bucket, so this instance sees it right away
+    public void added(String bucket) {
+        if (!known.contains(bucket)) {
+            NavigableSet<String> updated = new TreeSet<>(known);
+            updated.add(bucket);
+            known = Collections.unmodifiableNavigableSet(updated);
+        }
+    }
+
+    private List<String> withHotCollection(List<String> archives) {
+        List<String> collections = new ArrayList<>(archives.size() + 1);
+        collections.add(hotCollection);
+        collections.addAll(archives);
+        return collections;
+    }
+
+    private Mono<NavigableSet<String>> known() {
+        if (loaded && System.nanoTime() - refreshedAtNanos < refreshIntervalNanos) {
+            return Mono.just(known);
+        }
+        return mongoTemplate.getCollectionNames()
+                .filter(name -> name.startsWith(ARCHIVE_PREFIX))
+                .collect(TreeSet<String>::new, TreeSet::add)
+                .map(buckets -> {
+                    NavigableSet<String> refreshed = Collections.unmodifiableNavigableSet(buckets);
+                    known = refreshed;
+                    refreshedAtNanos = System.nanoTime();
+                    loaded = true;
+                    return refreshed;
+                });
+    }
+}
@@ -0,0 +1,39 @@
+package com.lap.hacom.order.repository;
+
+import com.lap.hacom.order.model.Order;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+
+/**
+ * Order queries that span the hot collection and the archive buckets, see {@link OrderArchiveBuckets}.
+ */
+public interface OrderRepositoryCustom {
+
+    /**
+     * Looks in the hot collection first, then in the archive buckets, newest first.
+     */
+    Mono<Order> findByOrderId(String orderId);
+
+    Mono<Boolean> existsByOrderId(String orderId);
+
+    /**
+     * Counts orders with from <= ts < toExclusive, querying the relevant collections in parallel.
+     * An order the archiver is moving is in its bucket before it leaves the hot collection, so a
+     * range reaching past {@code orders.tiering.archive-after-days} can count it twice: at most
+     * {@code orders.tiering.batch-size} orders per running archiver, and only for the time one
+     * batch takes to move. Deduplicating would mean reading every _id in the range instead of
+     * counting on the index.
+     */
+    Mono<Long> countByTs(Instant from, Instant toExclusive);
+
+    Mono<Long> countOrdersByDateRange(OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Orders with startDate <= ts <= endDate sorted by (ts, _id), each once even while it is
+     * being archived.
+     */
+    Flux<Order> findOrdersByDateRange(OffsetDateTime startDate, OffsetDateTime endDate);
+}
@@ -0,0 +1,105 @@
+package com.lap.hacom.order.repository;
+
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.config.MongoClientConfig;
+import com.lap.hacom.order.config.TieringConfig;
+import com.lap.hacom.order.model.Order;
+import com.mongodb.ReadPreference;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    private static final Comparator<Order> TS_ID_ORDER = Comparator
+            .comparing((Order order) -> order.getTs().toInstant())
+            .thenComparing(Order::get_id);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderArchiveBuckets archiveBuckets;
+    private final ReadPreference queryReadPreference;
+    private final int fanOutConcurrency;
+
+    @Autowired
+    public OrderRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate, OrderArchiveBuckets archiveBuckets,
+                                     MongoClientConfig mongoClientConfig, TieringConfig tieringConfig) {
+        this.mongoTemplate = mongoTemplate;
+        this.archiveBuckets = archiveBuckets;
+        this.queryReadPreference = mongoClientConfig.queryReadPreference();
+        this.fanOutConcurrency = tieringConfig.getFanOutConcurrency();
+    }
+
+    @Override
+    public Mono<Order> findByOrderId(String orderId) {
+        Query query = Query.query(Criteria.where(OrderCodec.ORDER_ID).is(orderId));
+
+        // Buckets are looked up in parallel but taken in order, so the newest match wins
+        return mongoTemplate.findOne(query, Order.class, archiveBuckets.hotCollection())
+                .switchIfEmpty(archiveBuckets.archives()
+                        .flatMapMany(Flux::fromIterable)
+                        .flatMapSequential(bucket -> mongoTemplate.findOne(query, Order.class, bucket), fanOutConcurrency)
+                        .next());
+    }
+
+    @Override
+    public Mono<Boolean> existsByOrderId(String orderId) {
+        Query query = Query.query(Criteria.where(OrderCodec.ORDER_ID).is(orderId));
+
+        return mongoTemplate.exists(query, archiveBuckets.hotCollection())
+                .flatMap(exists -> exists
+                        ? Mono.just(true)
+                        : archiveBuckets.archives()
+                                .flatMapMany(Flux::fromIterable)
+                                .flatMap(bucket -> mongoTemplate.exists(query, bucket), fanOutConcurrency)
+                                .any(Boolean::booleanValue));
+    }
+
+    @Override
+    public Mono<Long> countByTs(Instant from, Instant toExclusive) {
+        if (!from.isBefore(toExclusive)) {
+            return Mono.just(0L);
+        }
+
+        Query query = Query.query(Criteria.where(OrderCodec.TS).gte(from).lt(toExclusive))
+                .withReadPreference(queryReadPreference);
+
+        return archiveBuckets.collectionsFor(from, toExclusive)
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(collection -> mongoTemplate.count(query, Order.class, collection), fanOutConcurrency)
+                .reduce(0L, Long::sum);
+    }
+
+    @Override
+    public Mono<Long> countOrdersByDateRange(OffsetDateTime startDate, OffsetDateTime endDate) {
+        // Stored timestamps have millisecond precision, so "<= end" is "< end + 1ms"
+        return countByTs(startDate.toInstant().truncatedTo(ChronoUnit.MILLIS),
+                endDate.toInstant().truncatedTo(ChronoUnit.MILLIS).plusMillis(1));
+    }
+
+    @Override
+    public Flux<Order> findOrdersByDateRange(OffsetDateTime startDate, OffsetDateTime endDate) {
+        // Sorted by the ts_id index in every collection, so an order being archived, briefly in
+        // both the hot collection and its bucket, comes out twice in a row and is dropped once
+        Query query = Query.query(Criteria.where(OrderCodec.TS).gte(startDate).lte(endDate))
+                .with(Sort.by(Sort.Direction.ASC, OrderCodec.TS, OrderCodec.ID));
+
+        return archiveBuckets.collectionsFor(startDate.toInstant(), endDate.toInstant().plusMillis(1))
+                .flatMapMany(collections -> {
+                    @SuppressWarnings("unchecked")
+                    Flux<Order>[] sources = collections.stream()
+                            .map(collection -> mongoTemplate.find(query, Order.class, collection))
+                            .toArray(Flux[]::new);
+                    return Flux.mergeComparing(TS_ID_ORDER, sources);
+                })
+                .distinctUntilChanged(Order::get_id);
+    }
+}
@@ -0,0 +1,188 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.config.MongoIndexManager;
+import com.lap.hacom.order.config.TieringConfig;
+import com.lap.hacom.order.repository.OrderArchiveBuckets;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves completed orders older than {@code orders.tiering.archive-after-days} from the orders
+ * collection into their monthly archive bucket, a batch at a time with a pause in between.
+ * Documents are copied as stored, then deleted from the hot collection; a move interrupted
+ * between the two is finished by the next round, the copy already in the bucket being skipped
+ * as a duplicate. Several instances may run it at once.
+ */
+@Service
+public class OrderArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchiver.class);
+
+    private static final String COMPLETED = "COMPLETED";
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderArchiveBuckets archiveBuckets;
+    private final TieringConfig tieringConfig;
+
+    private final Counter archivedCounter;
+    private final Timer batchTimer;
+
+    // Buckets whose indexes this instance has already ensured
+    private final Set<String> indexedBuckets = ConcurrentHashMap.newKeySet();
+
+    private Disposable poller;
+
+    @Autowired
+    public OrderArchiver(ReactiveMongoTemplate mongoTemplate, OrderArchiveBuckets archiveBuckets,
+                         TieringConfig tieringConfig, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.archiveBuckets = archiveBuckets;
+        this.tieringConfig = tieringConfig;
+
+        this.archivedCounter = Counter.builder("hacom.orders.archived.total")
+                .description("Orders moved from the orders collection to an archive bucket")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("hacom.orders.archive.batch")
+                .description("Time to move one batch of orders to the archive")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!tieringConfig.isEnabled()) {
+            logger.info("Order archival disabled");
+            return;
+        }
+
+        logger.info("Archiving completed orders older than {} days every {} ms, batches of {}",
+                tieringConfig.getArchiveAfterDays(), tieringConfig.getPollIntervalMs(), tieringConfig.getBatchSize());
+
+        poller = Flux.interval(Duration.ofMillis(tieringConfig.getPollIntervalMs()))
+                .onBackpressureDrop()
+                .concatMap(tick -> archiveDue()
+                        .onErrorResume(error -> {
+                            logger.error("Error archiving orders: {}", error.getMessage(), error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    // Moves batches until one comes back short, pausing after each
+    private Mono<Void> archiveDue() {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(tieringConfig.getArchiveAfterDays()));
+        Duration pause = Duration.ofMillis(tieringConfig.getBatchIntervalMs());
+
+        return archiveBatch(cutoff)
+                .delayUntil(moved -> Mono.delay(pause))
+                .repeat()
+                .takeUntil(moved -> moved < tieringConfig.getBatchSize())
+                .reduce(0L, Long::sum)
+                .doOnNext(total -> {
+                    if (total > 0) {
+                        logger.info("Archived {} orders completed before {}", total, cutoff);
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Long> archiveBatch(Instant cutoff) {
+        Bson due = Filters.and(
+                Filters.eq(OrderCodec.STATUS, COMPLETED),
+                Filters.lt(OrderCodec.TS, Date.from(cutoff)));
+
+        Timer.Sample sample = Timer.start();
+        return mongoTemplate.getCollection(archiveBuckets.hotCollection())
+                .flatMapMany(hot -> Flux.from(hot.find(due)
+                        .sort(Sorts.ascending(OrderCodec.TS))
+                        .limit(tieringConfig.getBatchSize())))
+                .collectList()
+                .flatMap(batch -> Flux.fromIterable(groupByBucket(batch).entrySet())
+                        .concatMap(bucket -> move(bucket.getKey(), bucket.getValue()))
+                        .then(Mono.just((long) batch.size())))
+                .doOnSuccess(moved -> sample.stop(batchTimer));
+    }
+
+    private Map<String, List<Document>> groupByBucket(List<Document> batch) {
+        Map<String, List<Document>> buckets = new LinkedHashMap<>();
+        for (Document document : batch) {
+            String bucket = archiveBuckets.bucketFor(document.getDate(OrderCodec.TS).toInstant());
+            buckets.computeIfAbsent(bucket, ignored -> new ArrayList<>()).add(document);
+        }
+        return buckets;
+    }
+
+    private Mono<Void> move(String bucket, List<Document> documents) {
+        List<Object> ids = documents.stream().map(document -> document.get(OrderCodec.ID)).toList();
+
+        return ensureIndexes(bucket)
+                .then(mongoTemplate.getCollection(bucket))
+                .flatMap(archive -> Mono.from(archive.withWriteConcern(WriteConcern.MAJORITY)
+                                .insertMany(documents, UNORDERED))
+                        .then()
+                        .onErrorResume(MongoBulkWriteException.class, error -> onlyDuplicates(error)
+                                ? Mono.empty()
+                                : Mono.error(error)))
+                .doOnSuccess(ignored -> archiveBuckets.added(bucket))
+                .then(mongoTemplate.getCollection(archiveBuckets.hotCollection()))
+                .flatMap(hot -> Mono.from(hot.deleteMany(Filters.and(
+                        Filters.in(OrderCodec.ID, ids),
+                        Filters.eq(OrderCodec.STATUS, COMPLETED)))))
+                .doOnSuccess(result -> archivedCounter.increment(result.getDeletedCount()))
+                .then();
+    }
+
+    private Mono<Void> ensureIndexes(String bucket) {
+        if (indexedBuckets.contains(bucket)) {
+            return Mono.empty();
+        }
+        ReactiveIndexOperations indexOps = mongoTemplate.indexOps(bucket);
+        return Flux.fromIterable(MongoIndexManager.orderCollectionIndexes())
+                .concatMap(indexOps::ensureIndex)
+                .then()
+                .doOnSuccess(ignored -> indexedBuckets.add(bucket));
+    }
+
+    private static boolean onlyDuplicates(MongoBulkWriteException error) {
+        return error.getWriteConcernError() == null && error.getWriteErrors().stream()
+                .allMatch(writeError -> writeError.getCode() == DUPLICATE_KEY_ERROR);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (poller != null) {
+            poller.dispose();
+        }
+    }
+}
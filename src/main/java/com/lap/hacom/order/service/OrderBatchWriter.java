@@ -0,0 +1,373 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.config.MongoClientConfig;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OutboxMessage;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces order writes coming from many actors into size/time bounded micro-batches
+ * that are written with a single unordered bulk insert, encoded by {@link OrderCodec}. Orders
+ * are written with the write concern configured for the status they carry. Outbox entries queued with an order
+ * are written in the same flush, right after the orders, and an insert only reports success
+ * once its outbox entry is stored. If the outbox write fails the insert fails too, although
+ * the order itself is stored; the client's retry then lands on the duplicate path, which
+ * writes the entry again through {@link #writeOutbox(OutboxMessage)}.
+ */
+@Service
+public class OrderBatchWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderBatchWriter.class);
+
+    private static final Duration EMIT_TIMEOUT = Duration.ofMillis(100);
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderRollupService orderRollupService;
+    private final MongoClientConfig mongoClientConfig;
+    private final int maxBatchSize;
+    private final Duration maxWait;
+    private final int maxConcurrentFlushes;
+    private final Timer bulkInsertTimer;
+    private final Timer statusUpdateTimer;
+    private final Counter outboxWriteFailures;
+
+    // Orders accepted but not yet handed to a bulk write, keyed by orderId
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final Sinks.Many<PendingWrite> queue = Sinks.many().unicast().onBackpressureBuffer();
+
+    @Autowired
+    public OrderBatchWriter(ReactiveMongoTemplate mongoTemplate, OrderRollupService orderRollupService,
+                            MongoClientConfig mongoClientConfig, MeterRegistry meterRegistry,
+                            @Value("${orders.batch.max-size:256}") int maxBatchSize,
+                            @Value("${orders.batch.max-wait-ms:5}") long maxWaitMs,
+                            @Value("${orders.batch.max-concurrent-flushes:4}") int maxConcurrentFlushes) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderRollupService = orderRollupService;
+        this.mongoClientConfig = mongoClientConfig;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+        this.maxConcurrentFlushes = maxConcurrentFlushes;
+        this.bulkInsertTimer = mongoWriteTimer(meterRegistry, "bulk_insert");
+        this.statusUpdateTimer = mongoWriteTimer(meterRegistry, "update_status");
+        this.outboxWriteFailures = Counter.builder("hacom.sms.outbox.write.failures")
+                .description("Outbox entries that could not be stored with their order")
+                .register(meterRegistry);
+    }
+
+    private static Timer mongoWriteTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("hacom.orders.mongo.write")
+                .description("Round trip of order writes to MongoDB")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    private static <T> Mono<T> timed(Mono<T> write, Timer timer) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return write.doFinally(signal -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        logger.info("Starting order batch writer with max batch size {} and max wait {} ms",
+                maxBatchSize, maxWait.toMillis());
+
+        queue.asFlux()
+                .bufferTimeout(maxBatchSize, maxWait)
+                .flatMap(batch -> Mono.defer(() -> flush(batch))
+                        .onErrorResume(error -> {
+                            failBatch(batch, error);
+                            return Mono.empty();
+                        }), maxConcurrentFlushes)
+                .subscribe(null, error -> logger.error("Order batch writer stopped: {}", error.getMessage(), error));
+    }
+
+    // A failed flush must not end the stream; its callers get the error, later batches still run
+    private void failBatch(List<PendingWrite> batch, Throwable error) {
+        logger.error("Flush of {} orders failed: {}", batch.size(), error.getMessage(), error);
+        for (PendingWrite write : batch) {
+            pending.remove(write.order.getOrderId(), write);
+            // No-op for writes whose outcome was already reported
+            write.result.tryEmitError(error);
+        }
+    }
+
+    public Mono<Order> insert(Order order) {
+        return insert(order, null);
+    }
+
+    /**
+     * Queues the order, and optionally its outbox entry, for the next batch. The write happens
+     * whether or not the returned Mono is subscribed; the Mono only reports its outcome.
+     */
+    public Mono<Order> insert(Order order, OutboxMessage outbox) {
+        if (order.get_id() == null) {
+            order.set_id(new ObjectId());
+        }
+
+        PendingWrite write = new PendingWrite(order, outbox);
+        PendingWrite existing = pending.putIfAbsent(order.getOrderId(), write);
+        if (existing != null) {
+            logger.debug("Order {} is already queued for writing", order.getOrderId());
+            return existing.result.asMono();
+        }
+
+        try {
+            queue.emitNext(write, Sinks.EmitFailureHandler.busyLooping(EMIT_TIMEOUT));
+        } catch (Sinks.EmissionException e) {
+            pending.remove(order.getOrderId(), write);
+            return Mono.error(e);
+        }
+
+        return write.result.asMono();
+    }
+
+    /**
+     * Changes the status of an order. If the order has not been flushed yet the change is
+     * folded into the pending insert, which is then written with the new status's write
+     * concern; otherwise it is applied as a separate update with that write concern.
+     */
+    public Mono<Order> updateStatus(String orderId, String status) {
+        PendingWrite folded = pending.computeIfPresent(orderId, (id, write) -> {
+            write.order.setStatus(status);
+            return write;
+        });
+
+        if (folded != null) {
+            logger.debug("Status {} folded into pending insert for order {}", status, orderId);
+            return folded.result.asMono();
+        }
+
+        // Fetch the previous state so the rollups can move the order between status buckets
+        return timed(orderCollection(mongoClientConfig.writeConcernFor(status))
+                                .flatMap(collection -> Mono.from(collection.findOneAndUpdate(
+                                        Filters.eq(OrderCodec.ORDER_ID, orderId),
+                                        Updates.set(OrderCodec.STATUS, status),
+                                        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.BEFORE)))),
+                        statusUpdateTimer)
+                .flatMap(previous -> {
+                    String previousStatus = previous.getStatus();
+                    previous.setStatus(status);
+                    return orderRollupService.recordStatusChange(previous, previousStatus, status)
+                            .thenReturn(previous);
+                });
+    }
+
+    private Mono<Void> flush(List<PendingWrite> batch) {
+        // Usually a single group; a batch only splits when it mixes statuses with different write concerns
+        Map<WriteConcern, List<PendingWrite>> byWriteConcern = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            // Once removed, later status changes go through the update path
+            pending.remove(write.order.getOrderId(), write);
+            byWriteConcern.computeIfAbsent(mongoClientConfig.writeConcernFor(write.order.getStatus()),
+                    writeConcern -> new ArrayList<>()).add(write);
+        }
+
+        logger.debug("Flushing batch of {} orders", batch.size());
+
+        return Flux.fromIterable(byWriteConcern.entrySet())
+                .flatMap(group -> insertMany(group.getKey(), group.getValue()))
+                .flatMapIterable(inserted -> inserted)
+                .collectList()
+                .flatMap(inserted -> writeOutbox(inserted)
+                        .thenReturn(Optional.<Throwable>empty())
+                        .onErrorResume(error -> Mono.just(Optional.of(error)))
+                        .flatMap(outboxError -> {
+                            List<Order> insertedOrders = new ArrayList<>(inserted.size());
+                            for (PendingWrite write : inserted) {
+                                if (write.outbox != null && outboxError.isPresent()) {
+                                    write.result.tryEmitError(new DataAccessResourceFailureException(
+                                            "Outbox entry for order " + write.order.getOrderId() + " was not stored",
+                                            outboxError.get()));
+                                } else {
+                                    write.result.tryEmitValue(write.order);
+                                }
+                                // Stored either way, so it counts
+                                insertedOrders.add(write.order);
+                            }
+                            return orderRollupService.recordInserted(insertedOrders);
+                        }));
+    }
+
+    private Mono<List<PendingWrite>> insertMany(WriteConcern writeConcern, List<PendingWrite> writes) {
+        List<Order> orders = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            orders.add(write.order);
+        }
+
+        return timed(orderCollection(writeConcern).flatMap(collection -> Mono.from(collection.insertMany(orders, UNORDERED))),
+                        bulkInsertTimer)
+                .map(result -> writes)
+                .onErrorResume(error -> Mono.just(rejectFailedWrites(writes, error)));
+    }
+
+    // Straight to the driver so orders go through the codec, not reflective mapping
+    private Mono<MongoCollection<Order>> orderCollection(WriteConcern writeConcern) {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class))
+                .map(collection -> collection.withDocumentClass(Order.class).withWriteConcern(writeConcern));
+    }
+
+    /**
+     * Stores the outbox entry unless one exists for the order. Used when a retried or replayed
+     * order turns out to be stored already, since its first attempt may have died before the
+     * entry was written.
+     */
+    public Mono<Void> writeOutbox(OutboxMessage outbox) {
+        return mongoTemplate.upsert(outboxQuery(outbox), outboxUpsert(outbox), OutboxMessage.class).then();
+    }
+
+    // Upserts keep a re-flushed entry from failing; the dispatcher may already hold a lease on it
+    private Mono<Void> writeOutbox(List<PendingWrite> inserted) {
+        ReactiveBulkOperations bulkOps = null;
+        int entries = 0;
+
+        for (PendingWrite write : inserted) {
+            if (write.outbox == null) {
+                continue;
+            }
+            if (bulkOps == null) {
+                bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxMessage.class);
+            }
+            bulkOps.upsert(outboxQuery(write.outbox), outboxUpsert(write.outbox));
+            entries++;
+        }
+
+        if (bulkOps == null) {
+            return Mono.empty();
+        }
+
+        int batchEntries = entries;
+        return bulkOps.execute()
+                .doOnError(error -> {
+                    logger.error("Failed to write {} outbox entries: {}", batchEntries, error.getMessage(), error);
+                    outboxWriteFailures.increment(batchEntries);
+                })
+                .then();
+    }
+
+    private static Query outboxQuery(OutboxMessage outbox) {
+        return Query.query(Criteria.where("_id").is(outbox.getOrderId()));
+    }
+
+    private static Update outboxUpsert(OutboxMessage outbox) {
+        return new Update()
+                .setOnInsert("phoneNumber", outbox.getPhoneNumber())
+                .setOnInsert("message", outbox.getMessage())
+                .setOnInsert("createdAt", outbox.getCreatedAt())
+                .setOnInsert("leaseUntil", outbox.getLeaseUntil());
+    }
+
+    // Fails the writes that were rejected and returns the ones that were actually inserted
+    private List<PendingWrite> rejectFailedWrites(List<PendingWrite> batch, Throwable error) {
+        List<BulkWriteError> writeErrors = writeErrors(error);
+        if (writeErrors == null) {
+            logger.error("Bulk insert of {} orders failed: {}", batch.size(), error.getMessage(), error);
+            batch.forEach(write -> write.result.tryEmitError(error));
+            return List.of();
+        }
+
+        logger.warn("Bulk insert of {} orders completed with {} write errors", batch.size(), writeErrors.size());
+
+        Map<Integer, BulkWriteError> errorsByIndex = new HashMap<>();
+        for (BulkWriteError writeError : writeErrors) {
+            errorsByIndex.put(writeError.getIndex(), writeError);
+        }
+
+        List<PendingWrite> inserted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            BulkWriteError writeError = errorsByIndex.get(i);
+
+            if (writeError == null) {
+                inserted.add(write);
+            } else {
+                String message = "Insert failed for order " + write.order.getOrderId() + ": " + writeError.getMessage();
+                write.result.tryEmitError(writeError.getCode() == DUPLICATE_KEY_ERROR
+                        ? new DuplicateKeyException(message)
+                        : new DataIntegrityViolationException(message));
+            }
+        }
+        return inserted;
+    }
+
+    private static List<BulkWriteError> writeErrors(Throwable error) {
+        if (error instanceof BulkOperationException bulkError) {
+            return bulkError.getErrors();
+        }
+        if (error instanceof MongoBulkWriteException bulkError) {
+            return bulkError.getWriteErrors();
+        }
+        if (error.getCause() != null && error.getCause() != error) {
+            return writeErrors(error.getCause());
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        logger.info("Shutting down order batch writer");
+
+        // Completing the sink flushes whatever is still buffered
+        queue.tryEmitComplete();
+    }
+
+    private static final class PendingWrite {
+        private final Order order;
+        private final OutboxMessage outbox;
+        private final Sinks.One<Order> result = Sinks.one();
+
+        private PendingWrite(Order order, OutboxMessage outbox) {
+            this.order = order;
+            this.outbox = outbox;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OrderStatusEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of order status changes published by the order processor. Watchers
+ * subscribe to one orderId or one customerId; each key gets its own sink, created with the first
+ * watcher and dropped with the last, so publishing costs two map lookups no matter how many
+ * watchers are idle on other keys. A watcher that can't keep up has its oldest events dropped
+ * instead of slowing down the publisher or the other watchers.
+ *
+ * Only orders processed by this instance are published; there is no cross-instance feed.
+ */
+@Service
+public class OrderEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderEventBus.class);
+
+    private static final String FINAL_STATUS = "COMPLETED";
+
+    private final OrderStatusCache orderStatusCache;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger watchers = new AtomicInteger();
+    private final int watcherBufferSize;
+    private final Flux<Long> heartbeat;
+
+    private final Counter publishedCounter;
+    private final Counter droppedCounter;
+
+    @Autowired
+    public OrderEventBus(OrderStatusCache orderStatusCache, MeterRegistry meterRegistry,
+                         @Value("${orders.watch.buffer-size:16}") int watcherBufferSize,
+                         @Value("${orders.watch.heartbeat-ms:15000}") long heartbeatMs) {
+        this.orderStatusCache = orderStatusCache;
+        this.watcherBufferSize = watcherBufferSize;
+        // One timer shared by every watcher instead of one per connection
+        this.heartbeat = Flux.interval(Duration.ofMillis(heartbeatMs)).onBackpressureDrop().share();
+
+        this.publishedCounter = Counter.builder("hacom.orders.watch.published.total")
+                .description("Order status events delivered to at least one watcher")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("hacom.orders.watch.dropped.total")
+                .description("Order status events dropped for watchers that fell behind")
+                .register(meterRegistry);
+        Gauge.builder("hacom.orders.watch.subscribers", watchers, AtomicInteger::get)
+                .description("Open order status watches")
+                .register(meterRegistry);
+
+        logger.info("Order event bus initialized with watcher buffer {}, heartbeat every {} ms",
+                watcherBufferSize, heartbeatMs);
+    }
+
+    public void publish(Order order) {
+        OrderStatusEvent event = OrderStatusEvent.of(order);
+        boolean delivered = emit(orderKey(order.getOrderId()), event);
+        delivered |= emit(customerKey(order.getCustomerId()), event);
+        if (delivered) {
+            publishedCounter.increment();
+        }
+    }
+
+    /**
+     * Current status of the order, if it exists, followed by its changes. Completes once the
+     * order is COMPLETED. The live subscription is opened before the status is read, so a change
+     * in between is not missed, but it may arrive ahead of the older stored status.
+     */
+    public Flux<OrderStatusEvent> watchOrder(String orderId) {
+        return Flux.merge(
+                        watch(orderKey(orderId)),
+                        orderStatusCache.findByOrderId(orderId).map(OrderStatusEvent::of))
+                .takeUntil(event -> FINAL_STATUS.equals(event.getStatus()));
+    }
+
+    public Flux<OrderStatusEvent> watchCustomer(String customerId) {
+        return watch(customerKey(customerId));
+    }
+
+    /**
+     * Ticks shared by all watchers, for transports that need traffic to keep idle
+     * connections open.
+     */
+    public Flux<Long> heartbeat() {
+        return heartbeat;
+    }
+
+    private Flux<OrderStatusEvent> watch(String key) {
+        return Flux.defer(() -> {
+            Topic topic = topics.compute(key, (k, current) -> {
+                Topic retained = current != null ? current : new Topic();
+                retained.watchers++;
+                return retained;
+            });
+            watchers.incrementAndGet();
+
+            return topic.sink.asFlux()
+                    .onBackpressureBuffer(watcherBufferSize, dropped -> droppedCounter.increment(),
+                            BufferOverflowStrategy.DROP_OLDEST)
+                    .doFinally(signal -> release(key));
+        });
+    }
+
+    private void release(String key) {
+        watchers.decrementAndGet();
+        topics.computeIfPresent(key, (k, topic) -> --topic.watchers == 0 ? null : topic);
+    }
+
+    private boolean emit(String key, OrderStatusEvent event) {
+        Topic topic = topics.get(key);
+        if (topic == null) {
+            return false;
+        }
+        // Shards publish concurrently; a sink accepts one emitter at a time
+        synchronized (topic) {
+            return topic.sink.tryEmitNext(event).isSuccess();
+        }
+    }
+
+    private static String orderKey(String orderId) {
+        return "order:" + orderId;
+    }
+
+    private static String customerKey(String customerId) {
+        return "customer:" + customerId;
+    }
+
+    // Watcher count is only touched inside topics.compute, which serialises it per key
+    private static final class Topic {
+        private final Sinks.Many<OrderStatusEvent> sink = Sinks.many().multicast().directBestEffort();
+        private int watchers;
+    }
+}
@@ -0,0 +1,158 @@
+package com.lap.hacom.order.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.config.MongoClientConfig;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.repository.OrderArchiveBuckets;
+import com.mongodb.ReadPreference;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streams orders for a date range straight from a Mongo cursor, sorted by (ts, _id) so an
+ * interrupted export can resume after the last cursor token it received. Ranges reaching into
+ * archived months read the hot collection and those archive buckets, merged in the same order.
+ */
+@Service
+public class OrderExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportService.class);
+
+    private static final String CSV_HEADER = "orderId,customerId,status,items,ts,cursor\n";
+
+    private static final Comparator<Order> EXPORT_ORDER = Comparator
+            .comparing((Order order) -> order.getTs().toInstant())
+            .thenComparing(Order::get_id);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderArchiveBuckets archiveBuckets;
+    private final ObjectMapper objectMapper;
+    private final ReadPreference queryReadPreference;
+    private final int cursorBatchSize;
+
+    @Autowired
+    public OrderExportService(ReactiveMongoTemplate mongoTemplate, OrderArchiveBuckets archiveBuckets,
+                              ObjectMapper objectMapper, MongoClientConfig mongoClientConfig,
+                              @Value("${orders.export.cursor-batch-size:1000}") int cursorBatchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.archiveBuckets = archiveBuckets;
+        this.objectMapper = objectMapper;
+        this.queryReadPreference = mongoClientConfig.queryReadPreference();
+        this.cursorBatchSize = cursorBatchSize;
+    }
+
+    public Flux<String> exportNdjson(OffsetDateTime startDate, OffsetDateTime endDate, String after, int limit) {
+        return findOrders(startDate, endDate, after, limit).map(this::toJsonLine);
+    }
+
+    public Flux<String> exportCsv(OffsetDateTime startDate, OffsetDateTime endDate, String after, int limit) {
+        return Flux.concat(
+                Flux.just(CSV_HEADER),
+                findOrders(startDate, endDate, after, limit).map(OrderExportService::toCsvLine));
+    }
+
+    private Flux<Order> findOrders(OffsetDateTime startDate, OffsetDateTime endDate, String after, int limit) {
+        Criteria criteria = Criteria.where(OrderCodec.TS).gte(startDate).lte(endDate);
+
+        if (after != null && !after.isBlank()) {
+            CursorToken token = CursorToken.parse(after);
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where(OrderCodec.TS).gt(token.ts()),
+                    Criteria.where(OrderCodec.TS).is(token.ts()).and(OrderCodec.ID).gt(token.id())));
+        }
+
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, OrderCodec.TS, OrderCodec.ID))
+                .cursorBatchSize(cursorBatchSize)
+                .withReadPreference(queryReadPreference);
+        query.fields().include(OrderCodec.ORDER_ID, OrderCodec.CUSTOMER_ID, OrderCodec.STATUS, OrderCodec.ITEMS,
+                OrderCodec.TS, OrderCodec.TZ);
+
+        if (limit > 0) {
+            query.limit(limit);
+        }
+
+        logger.debug("Export query: {}", query);
+
+        Flux<Order> orders = archiveBuckets.collectionsFor(startDate.toInstant(), endDate.toInstant().plusMillis(1))
+                .flatMapMany(collections -> {
+                    @SuppressWarnings("unchecked")
+                    Flux<Order>[] sources = collections.stream()
+                            .map(collection -> mongoTemplate.find(query, Order.class, collection))
+                            .toArray(Flux[]::new);
+                    return Flux.mergeComparing(EXPORT_ORDER, sources);
+                })
+                // An order being archived is briefly in two collections; merged by (ts, _id) the copies are adjacent
+                .distinctUntilChanged(Order::get_id);
+        return limit > 0 ? orders.take(limit) : orders;
+    }
+
+    private String toJsonLine(Order order) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("orderId", order.getOrderId());
+        line.put("customerId", order.getCustomerId());
+        line.put("status", order.getStatus());
+        line.put("items", order.getItems());
+        line.put("ts", order.getTs());
+        line.put("cursor", CursorToken.of(order));
+
+        try {
+            return objectMapper.writeValueAsString(line) + "\n";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize order " + order.getOrderId(), e);
+        }
+    }
+
+    private static String toCsvLine(Order order) {
+        return csv(order.getOrderId()) + ','
+                + csv(order.getCustomerId()) + ','
+                + csv(order.getStatus()) + ','
+                + csv(order.getItems() == null ? "" : String.join(";", order.getItems())) + ','
+                + csv(String.valueOf(order.getTs())) + ','
+                + csv(CursorToken.of(order)) + '\n';
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // Resume position: the (ts, _id) of the last exported order, as "<ISO ts>_<ObjectId hex>"
+    private record CursorToken(OffsetDateTime ts, ObjectId id) {
+
+        static String of(Order order) {
+            return order.getTs() + "_" + order.get_id().toHexString();
+        }
+
+        static CursorToken parse(String token) {
+            int separator = token.lastIndexOf('_');
+            try {
+                return new CursorToken(OffsetDateTime.parse(token.substring(0, separator)),
+                        new ObjectId(token.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid export cursor: " + token, e);
+            }
+        }
+    }
+}
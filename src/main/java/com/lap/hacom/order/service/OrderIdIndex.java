@@ -0,0 +1,145 @@
+package com.lap.hacom.order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.repository.OrderArchiveBuckets;
+import com.lap.hacom.order.repository.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers "has this orderId been created before?" for idempotent order creation. A Bloom
+ * filter over every known orderId rules out the common new-order case without touching Mongo,
+ * an LRU of recently created ids catches client retries, and a Mongo lookup settles the filter's
+ * false positives. The unique orderId index stays the authority for concurrent creates. Lookups
+ * and the rebuild include the archive buckets, so an archived orderId is still recognised.
+ *
+ * The filter is not persisted; after a restart it is rebuilt from the collection in the
+ * background on first use, and every lookup goes to Mongo until the rebuild finishes.
+ */
+@Service
+public class OrderIdIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIdIndex.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderRepository orderRepository;
+    private final OrderArchiveBuckets archiveBuckets;
+    private final BloomFilter<CharSequence> filter;
+    private final Cache<String, Boolean> recentlyCreated;
+
+    private final AtomicBoolean rebuildStarted = new AtomicBoolean();
+    private volatile boolean ready;
+
+    private final Counter filterNegatives;
+    private final Counter mongoLookups;
+
+    @Autowired
+    public OrderIdIndex(ReactiveMongoTemplate mongoTemplate, OrderRepository orderRepository,
+                        OrderArchiveBuckets archiveBuckets, MeterRegistry meterRegistry,
+                        @Value("${orders.idempotency.expected-orders:10000000}") long expectedOrders,
+                        @Value("${orders.idempotency.false-positive-rate:0.001}") double falsePositiveRate,
+                        @Value("${orders.idempotency.recent-ids:100000}") long recentIds) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderRepository = orderRepository;
+        this.archiveBuckets = archiveBuckets;
+        this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedOrders, falsePositiveRate);
+        this.recentlyCreated = Caffeine.newBuilder()
+                .maximumSize(recentIds)
+                .build();
+
+        this.filterNegatives = Counter.builder("hacom.orders.idempotency.lookups")
+                .description("Duplicate checks by where they were answered")
+                .tag("source", "filter")
+                .register(meterRegistry);
+        this.mongoLookups = Counter.builder("hacom.orders.idempotency.lookups")
+                .description("Duplicate checks by where they were answered")
+                .tag("source", "mongo")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resolves to true if an order with this id was already created. A false answer is only
+     * a hint; a concurrent create can still win, which the unique index reports on insert.
+     */
+    public Mono<Boolean> isKnown(String orderId) {
+        if (recentlyCreated.getIfPresent(orderId) != null) {
+            return Mono.just(true);
+        }
+
+        if (!ready) {
+            startRebuild();
+            return existsInMongo(orderId);
+        }
+
+        if (!filter.mightContain(orderId)) {
+            filterNegatives.increment();
+            return Mono.just(false);
+        }
+
+        return existsInMongo(orderId);
+    }
+
+    public void markCreated(String orderId) {
+        recentlyCreated.put(orderId, Boolean.TRUE);
+        filter.put(orderId);
+    }
+
+    /**
+     * Called when a create failed without writing, so a retry is not answered as a duplicate.
+     * The filter bit stays set; the retry then just takes the Mongo lookup path.
+     */
+    public void forget(String orderId) {
+        recentlyCreated.invalidate(orderId);
+    }
+
+    private Mono<Boolean> existsInMongo(String orderId) {
+        mongoLookups.increment();
+        return orderRepository.existsByOrderId(orderId);
+    }
+
+    // Ids created while the rebuild runs are put into the same filter, so nothing is lost
+    private void startRebuild() {
+        if (!rebuildStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        logger.info("Rebuilding orderId filter from the orders collection");
+
+        Query query = new Query();
+        query.fields().include(OrderCodec.ORDER_ID).exclude(OrderCodec.ID);
+
+        archiveBuckets.allCollections()
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(collection -> mongoTemplate.find(query, Document.class, collection))
+                .mapNotNull(document -> document.getString(OrderCodec.ORDER_ID))
+                .doOnNext(filter::put)
+                .count()
+                .subscribe(
+                        count -> {
+                            ready = true;
+                            logger.info("OrderId filter rebuilt with {} orders", count);
+                        },
+                        error -> {
+                            logger.error("Failed to rebuild orderId filter, will retry on next lookup: {}",
+                                    error.getMessage(), error);
+                            rebuildStarted.set(false);
+                        });
+    }
+}
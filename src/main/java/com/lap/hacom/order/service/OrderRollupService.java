@@ -0,0 +1,282 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.config.MongoClientConfig;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OrderCountRollup;
+import com.lap.hacom.order.repository.OrderArchiveBuckets;
+import com.lap.hacom.order.repository.OrderRepository;
+import com.mongodb.ReadPreference;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps per-minute, per-hour and per-day order counts (overall, by status and by customer)
+ * so range counts can be answered from a handful of pre-aggregated buckets instead of
+ * counting raw orders. Buckets are aligned to UTC.
+ */
+@Service
+public class OrderRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderRollupService.class);
+
+    public static final String ROLLUP_COLLECTION = "order_count_rollups";
+
+    private static final String ALL = "all";
+
+    enum Granularity {
+        MINUTE("m", ChronoUnit.MINUTES, "minute"),
+        HOUR("h", ChronoUnit.HOURS, "hour"),
+        DAY("d", ChronoUnit.DAYS, "day");
+
+        private final String code;
+        private final ChronoUnit unit;
+        private final String mongoUnit;
+
+        Granularity(String code, ChronoUnit unit, String mongoUnit) {
+            this.code = code;
+            this.unit = unit;
+            this.mongoUnit = mongoUnit;
+        }
+    }
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OrderRepository orderRepository;
+    private final OrderArchiveBuckets archiveBuckets;
+    private final ReadPreference queryReadPreference;
+    private final boolean enabled;
+
+    @Autowired
+    public OrderRollupService(ReactiveMongoTemplate mongoTemplate, OrderRepository orderRepository,
+                              OrderArchiveBuckets archiveBuckets, MongoClientConfig mongoClientConfig,
+                              @Value("${orders.rollup.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderRepository = orderRepository;
+        this.archiveBuckets = archiveBuckets;
+        this.queryReadPreference = mongoClientConfig.queryReadPreference();
+        this.enabled = enabled;
+    }
+
+    public Mono<Void> recordInserted(List<Order> orders) {
+        if (!enabled || orders.isEmpty()) {
+            return Mono.empty();
+        }
+
+        Map<String, Long> deltas = new HashMap<>();
+        for (Order order : orders) {
+            Instant ts = order.getTs().toInstant();
+            for (Granularity granularity : Granularity.values()) {
+                deltas.merge(rollupId(granularity, ts, ALL), 1L, Long::sum);
+                deltas.merge(rollupId(granularity, ts, statusDimension(order.getStatus())), 1L, Long::sum);
+                deltas.merge(rollupId(granularity, ts, "customer:" + order.getCustomerId()), 1L, Long::sum);
+            }
+        }
+        return applyDeltas(deltas);
+    }
+
+    public Mono<Void> recordStatusChange(Order order, String oldStatus, String newStatus) {
+        if (!enabled || newStatus.equals(oldStatus)) {
+            return Mono.empty();
+        }
+
+        Map<String, Long> deltas = new HashMap<>();
+        Instant ts = order.getTs().toInstant();
+        for (Granularity granularity : Granularity.values()) {
+            deltas.merge(rollupId(granularity, ts, statusDimension(oldStatus)), -1L, Long::sum);
+            deltas.merge(rollupId(granularity, ts, statusDimension(newStatus)), 1L, Long::sum);
+        }
+        return applyDeltas(deltas);
+    }
+
+    /**
+     * Counts orders with startDate <= ts <= endDate from rollup buckets, counting the raw
+     * collection only for the partial minutes at both edges.
+     */
+    public Mono<Long> countOrders(OffsetDateTime startDate, OffsetDateTime endDate) {
+        Instant start = startDate.toInstant().truncatedTo(ChronoUnit.MILLIS);
+        // Stored timestamps have millisecond precision, so "<= end" is "< end + 1ms"
+        Instant endExclusive = endDate.toInstant().truncatedTo(ChronoUnit.MILLIS).plusMillis(1);
+
+        if (!enabled) {
+            return countRaw(start, endExclusive);
+        }
+
+        Instant alignedStart = ceil(start, Granularity.MINUTE);
+        Instant alignedEnd = floor(endExclusive, Granularity.MINUTE);
+
+        if (!alignedStart.isBefore(alignedEnd)) {
+            return countRaw(start, endExclusive);
+        }
+
+        return Flux.concat(
+                        countRaw(start, alignedStart),
+                        countBuckets(alignedStart, alignedEnd, 0),
+                        countRaw(alignedEnd, endExclusive))
+                .reduce(0L, Long::sum);
+    }
+
+    public Mono<Map<String, Object>> checkConsistency(OffsetDateTime startDate, OffsetDateTime endDate) {
+        Instant start = startDate.toInstant().truncatedTo(ChronoUnit.MILLIS);
+        Instant endExclusive = endDate.toInstant().truncatedTo(ChronoUnit.MILLIS).plusMillis(1);
+
+        return Mono.zip(countOrders(startDate, endDate), countRaw(start, endExclusive))
+                .map(counts -> {
+                    long rollupCount = counts.getT1();
+                    long rawCount = counts.getT2();
+                    if (rollupCount != rawCount) {
+                        logger.warn("Rollup count {} differs from raw count {} between {} and {}",
+                                rollupCount, rawCount, startDate, endDate);
+                    }
+
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("rollupCount", rollupCount);
+                    result.put("rawCount", rawCount);
+                    result.put("consistent", rollupCount == rawCount);
+                    return result;
+                });
+    }
+
+    /**
+     * Recomputes every bucket from the raw orders, hot and archived, and replaces the stored
+     * rollups. Orders written or archived while the rebuild runs may be counted twice or missed;
+     * run the consistency check afterwards.
+     */
+    public Mono<Void> rebuild() {
+        logger.info("Rebuilding order count rollups from raw orders");
+
+        return mongoTemplate.remove(new Query(), ROLLUP_COLLECTION)
+                .then(archiveBuckets.allCollections())
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(collection -> Flux.fromArray(Granularity.values())
+                        .concatMap(granularity -> Flux.just(
+                                        new Document("$literal", ALL),
+                                        new Document("$concat", List.of("status:", "$" + OrderCodec.STATUS)),
+                                        new Document("$concat", List.of("customer:", "$" + OrderCodec.CUSTOMER_ID)))
+                                .concatMap(dimension -> rebuildBuckets(collection, granularity, dimension))))
+                .then()
+                .doOnSuccess(ignored -> logger.info("Order count rollups rebuilt"))
+                .doOnError(error -> logger.error("Failed to rebuild order count rollups: {}", error.getMessage(), error));
+    }
+
+    // Each collection's counts are added to what the collections before it merged into a bucket
+    private Mono<Void> rebuildBuckets(String collectionName, Granularity granularity, Document dimension) {
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", new Document()
+                        .append("t", new Document("$dateTrunc", new Document("date", "$" + OrderCodec.TS).append("unit", granularity.mongoUnit)))
+                        .append("d", dimension))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$project", new Document()
+                        .append("_id", new Document("$concat", List.of(
+                                granularity.code, "|", new Document("$toString", new Document("$toLong", "$_id.t")), "|", "$_id.d")))
+                        .append("granularity", granularity.code)
+                        .append("bucketStart", "$_id.t")
+                        .append("dimension", "$_id.d")
+                        .append("count", 1)),
+                new Document("$merge", new Document("into", ROLLUP_COLLECTION)
+                        .append("whenMatched", List.of(new Document("$set", new Document("count",
+                                new Document("$add", List.of("$count", "$$new.count"))))))
+                        .append("whenNotMatched", "insert")));
+
+        return mongoTemplate.getCollection(collectionName)
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).allowDiskUse(true).toCollection()));
+    }
+
+    // Sums buckets of the given granularity between two instants aligned to it, using coarser
+    // buckets for the aligned middle part when there is one
+    private Mono<Long> countBuckets(Instant from, Instant to, int level) {
+        Granularity granularity = Granularity.values()[level];
+
+        if (level + 1 < Granularity.values().length) {
+            Granularity coarser = Granularity.values()[level + 1];
+            Instant alignedFrom = ceil(from, coarser);
+            Instant alignedTo = floor(to, coarser);
+
+            if (alignedFrom.isBefore(alignedTo)) {
+                return Flux.concat(
+                                sumBuckets(granularity, from, alignedFrom),
+                                countBuckets(alignedFrom, alignedTo, level + 1),
+                                sumBuckets(granularity, alignedTo, to))
+                        .reduce(0L, Long::sum);
+            }
+        }
+
+        return sumBuckets(granularity, from, to);
+    }
+
+    private Mono<Long> sumBuckets(Granularity granularity, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            return Mono.just(0L);
+        }
+
+        Query query = Query.query(Criteria.where("granularity").is(granularity.code)
+                .and("dimension").is(ALL)
+                .and("bucketStart").gte(from).lt(to))
+                .withReadPreference(queryReadPreference);
+        query.fields().include("count");
+
+        return mongoTemplate.find(query, OrderCountRollup.class)
+                .map(OrderCountRollup::getCount)
+                .reduce(0L, Long::sum);
+    }
+
+    // Fans out to the archive buckets covering the range
+    private Mono<Long> countRaw(Instant from, Instant to) {
+        return orderRepository.countByTs(from, to);
+    }
+
+    private Mono<Void> applyDeltas(Map<String, Long> deltas) {
+        ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OrderCountRollup.class);
+
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            String[] parts = delta.getKey().split("\\|", 3);
+            bulkOps.upsert(
+                    Query.query(Criteria.where("_id").is(delta.getKey())),
+                    new Update()
+                            .inc("count", delta.getValue())
+                            .setOnInsert("granularity", parts[0])
+                            .setOnInsert("bucketStart", Instant.ofEpochMilli(Long.parseLong(parts[1])))
+                            .setOnInsert("dimension", parts[2]));
+        }
+
+        return bulkOps.execute()
+                .doOnError(error -> logger.error("Failed to update order count rollups: {}", error.getMessage(), error))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private static String statusDimension(String status) {
+        return "status:" + status;
+    }
+
+    private static String rollupId(Granularity granularity, Instant ts, String dimension) {
+        return granularity.code + "|" + ts.truncatedTo(granularity.unit).toEpochMilli() + "|" + dimension;
+    }
+
+    private static Instant floor(Instant instant, Granularity granularity) {
+        return instant.truncatedTo(granularity.unit);
+    }
+
+    private static Instant ceil(Instant instant, Granularity granularity) {
+        Instant floor = instant.truncatedTo(granularity.unit);
+        return floor.equals(instant) ? floor : floor.plus(1, granularity.unit);
+    }
+}
@@ -0,0 +1,99 @@
+package com.lap.hacom.order.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.lap.hacom.order.journal.OrderJournal;
+import com.lap.hacom.order.journal.OrderJournalCodec;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.repository.OrderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded read-through cache in front of {@link OrderRepository#findByOrderId}. The order
+ * processor writes through on every persist and status change; unknown orderIds are cached
+ * as empty for a shorter time so polling for a not-yet-created order stays cheap. On a miss,
+ * orders still waiting in the local {@link OrderJournal} are found there before Mongo.
+ */
+@Service
+public class OrderStatusCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusCache.class);
+
+    private final OrderRepository orderRepository;
+    private final OrderJournal orderJournal;
+    private final Cache<String, Optional<Order>> cache;
+
+    @Autowired
+    public OrderStatusCache(OrderRepository orderRepository, OrderJournal orderJournal, MeterRegistry meterRegistry,
+                            @Value("${orders.status-cache.max-size:100000}") long maxSize,
+                            @Value("${orders.status-cache.ttl-ms:60000}") long ttlMs,
+                            @Value("${orders.status-cache.negative-ttl-ms:1000}") long negativeTtlMs) {
+        this.orderRepository = orderRepository;
+        this.orderJournal = orderJournal;
+
+        long ttlNanos = Duration.ofMillis(ttlMs).toNanos();
+        long negativeTtlNanos = Duration.ofMillis(negativeTtlMs).toNanos();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Optional<Order>>() {
+                    @Override
+                    public long expireAfterCreate(String orderId, Optional<Order> order, long currentTime) {
+                        return order.isPresent() ? ttlNanos : negativeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String orderId, Optional<Order> order, long currentTime,
+                                                  long currentDuration) {
+                        return order.isPresent() ? ttlNanos : negativeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String orderId, Optional<Order> order, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "orderStatus");
+
+        logger.info("Order status cache initialized with max size {}, TTL {} ms, negative TTL {} ms",
+                maxSize, ttlMs, negativeTtlMs);
+    }
+
+    public Mono<Order> findByOrderId(String orderId) {
+        Optional<Order> cached = cache.getIfPresent(orderId);
+        if (cached != null) {
+            return Mono.justOrEmpty(cached);
+        }
+
+        Optional<byte[]> journaled = orderJournal.find(orderId);
+        if (journaled.isPresent()) {
+            return Mono.just(OrderJournalCodec.decode(journaled.get()));
+        }
+
+        return orderRepository.findByOrderId(orderId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                // Don't overwrite a fresher value written through while the lookup was running
+                .map(order -> cache.asMap().merge(orderId, order, (current, loaded) -> current))
+                .flatMap(Mono::justOrEmpty);
+    }
+
+    public void put(Order order) {
+        cache.put(order.getOrderId(), Optional.of(order));
+    }
+}
@@ -0,0 +1,172 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.model.OutboxMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the SMS outbox written by {@link OrderBatchWriter}. Each poll claims a batch by
+ * stamping a lease on due entries with this round's token, so several instances can drain the
+ * same outbox; an instance that dies mid-batch just lets its lease run out and the entries are
+ * claimed again. Delivery is therefore at least once.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final SmsNotificationService smsNotificationService;
+    private final Duration pollInterval;
+    private final int batchSize;
+    private final Duration lease;
+    private final int concurrency;
+
+    private final Counter dispatchedCounter;
+    private final Timer lagTimer;
+    private final AtomicLong outboxSize = new AtomicLong();
+    private final AtomicLong oldestEntryAgeMs = new AtomicLong();
+
+    private Disposable poller;
+
+    @Autowired
+    public OutboxDispatcher(ReactiveMongoTemplate mongoTemplate, SmsNotificationService smsNotificationService,
+                            MeterRegistry meterRegistry,
+                            @Value("${orders.outbox.poll-interval-ms:200}") long pollIntervalMs,
+                            @Value("${orders.outbox.batch-size:100}") int batchSize,
+                            @Value("${orders.outbox.lease-ms:30000}") long leaseMs,
+                            @Value("${orders.outbox.concurrency:8}") int concurrency) {
+        this.mongoTemplate = mongoTemplate;
+        this.smsNotificationService = smsNotificationService;
+        this.pollInterval = Duration.ofMillis(pollIntervalMs);
+        this.batchSize = batchSize;
+        this.lease = Duration.ofMillis(leaseMs);
+        this.concurrency = concurrency;
+
+        this.dispatchedCounter = Counter.builder("hacom.sms.outbox.dispatched.total")
+                .description("Outbox entries handed to the SMS notification service")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("hacom.sms.outbox.lag")
+                .description("Time from writing an outbox entry until it is dispatched")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(10))
+                .register(meterRegistry);
+
+        meterRegistry.gauge("hacom.sms.outbox.size", outboxSize);
+        meterRegistry.gauge("hacom.sms.outbox.oldest.age.ms", oldestEntryAgeMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        logger.info("Starting SMS outbox dispatcher every {} ms, batches of {}", pollInterval.toMillis(), batchSize);
+
+        poller = Flux.interval(pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> drain()
+                        .onErrorResume(error -> {
+                            logger.error("Error draining SMS outbox: {}", error.getMessage(), error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    // Claims and dispatches one batch at a time until a batch comes back short, then refreshes the gauges
+    private Mono<Void> drain() {
+        return claimBatch()
+                .flatMap(claimed -> Flux.fromIterable(claimed)
+                        .flatMap(this::dispatch, concurrency)
+                        .then(Mono.just(claimed.size())))
+                .repeat()
+                .takeUntil(claimed -> claimed < batchSize)
+                .then(refreshGauges());
+    }
+
+    private Mono<List<OutboxMessage>> claimBatch() {
+        Instant now = Instant.now();
+        String token = UUID.randomUUID().toString();
+
+        Query due = Query.query(Criteria.where("leaseUntil").lte(now))
+                .with(Sort.by(Sort.Direction.ASC, "leaseUntil"))
+                .limit(batchSize);
+        due.fields().include("_id");
+
+        // Re-checking leaseUntil in the update makes the claim safe against a concurrent claimer
+        return mongoTemplate.find(due, OutboxMessage.class)
+                .map(OutboxMessage::getOrderId)
+                .collectList()
+                .filter(ids -> !ids.isEmpty())
+                .flatMap(ids -> mongoTemplate.updateMulti(
+                        Query.query(Criteria.where("_id").in(ids).and("leaseUntil").lte(now)),
+                        new Update().set("leaseUntil", now.plus(lease)).set("leaseOwner", token),
+                        OutboxMessage.class))
+                .flatMap(result -> mongoTemplate.find(
+                                Query.query(Criteria.where("leaseOwner").is(token)), OutboxMessage.class)
+                        .collectList())
+                .defaultIfEmpty(List.of());
+    }
+
+    // SmsNotificationService owns retries and dead letters, so the entry is done once handed over;
+    // it stays, no longer claimable, until the TTL on dispatchedAt removes it
+    private Mono<Void> dispatch(OutboxMessage outbox) {
+        return smsNotificationService.send(outbox.getPhoneNumber(), outbox.getMessage())
+                .then(mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(outbox.getOrderId())
+                                .and("leaseOwner").is(outbox.getLeaseOwner())),
+                        new Update().set("dispatchedAt", Instant.now()).unset("leaseUntil").unset("leaseOwner"),
+                        OutboxMessage.class))
+                .doOnSuccess(removed -> {
+                    dispatchedCounter.increment();
+                    lagTimer.record(Duration.between(outbox.getCreatedAt(), Instant.now()));
+                })
+                .doOnError(error -> logger.warn("Failed to dispatch outbox entry for order {}, will retry after lease: {}",
+                        outbox.getOrderId(), error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private Mono<Void> refreshGauges() {
+        Criteria waiting = Criteria.where("dispatchedAt").exists(false);
+        Query oldest = Query.query(waiting).with(Sort.by(Sort.Direction.ASC, "createdAt")).limit(1);
+
+        return Mono.zip(
+                        mongoTemplate.count(Query.query(waiting), OutboxMessage.class),
+                        mongoTemplate.findOne(oldest, OutboxMessage.class)
+                                .map(entry -> Duration.between(entry.getCreatedAt(), Instant.now()).toMillis())
+                                .defaultIfEmpty(0L))
+                .doOnNext(gauges -> {
+                    outboxSize.set(gauges.getT1());
+                    oldestEntryAgeMs.set(gauges.getT2());
+                })
+                .then();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (poller != null) {
+            poller.dispose();
+        }
+    }
+}
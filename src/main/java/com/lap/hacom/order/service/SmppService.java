@@ -1,22 +1,43 @@
 package com.lap.hacom.order.service;
 
+import com.cloudhopper.commons.util.windowing.WindowFuture;
+import com.cloudhopper.smpp.PduAsyncResponse;
 import com.cloudhopper.smpp.SmppBindType;
+import com.cloudhopper.smpp.SmppConstants;
 import com.cloudhopper.smpp.SmppSession;
 import com.cloudhopper.smpp.SmppSessionConfiguration;
 import com.cloudhopper.smpp.impl.DefaultSmppClient;
 import com.cloudhopper.smpp.impl.DefaultSmppSessionHandler;
+import com.cloudhopper.smpp.pdu.EnquireLink;
+import com.cloudhopper.smpp.pdu.PduRequest;
+import com.cloudhopper.smpp.pdu.PduResponse;
 import com.cloudhopper.smpp.pdu.SubmitSm;
+import com.cloudhopper.smpp.pdu.SubmitSmResp;
 import com.cloudhopper.smpp.type.*;
+import com.lap.hacom.order.config.ExecutionConfig;
+import com.lap.hacom.order.config.ExecutionSchedulers;
 import com.lap.hacom.order.config.SmppConfig;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class SmppService {
@@ -25,16 +46,51 @@ public class SmppService {
 
     private final SmppConfig smppConfig;
     private final Counter smsCounter;
+    private final Counter smsRejectedCounter;
+    private final Map<SmsSubmitResult, Timer> submitTimers = new EnumMap<>(SmsSubmitResult.class);
+
+    // Blocking submits run here, never on Mongo driver or actor threads
+    private final Scheduler notificationScheduler;
+    // Submits accepted and not yet past their blocking part, capped at threads + queue capacity
+    private final AtomicInteger pendingSubmits = new AtomicInteger();
+    private final int maxPendingSubmits;
+
+    private final AtomicInteger nextSession = new AtomicInteger();
+
+    // Shared by all sessions, since the SMSC enforces TPS per account
+    private final TokenBucketRateLimiter rateLimiter;
 
     private DefaultSmppClient smppClient;
-    private SmppSession smppSession;
+    private volatile SmppSession[] sessions;
+    private ScheduledExecutorService keepAliveExecutor;
 
     @Autowired
-    public SmppService(SmppConfig smppConfig, MeterRegistry meterRegistry) {
+    public SmppService(SmppConfig smppConfig, ExecutionConfig executionConfig, MeterRegistry meterRegistry) {
         this.smppConfig = smppConfig;
         this.smsCounter = Counter.builder("hacom.sms.sent.total")
                 .description("Total number of SMS messages sent")
                 .register(meterRegistry);
+        this.smsRejectedCounter = Counter.builder("hacom.sms.rejected.total")
+                .description("SMS notifications rejected because the notification queue was full")
+                .register(meterRegistry);
+
+        for (SmsSubmitResult result : SmsSubmitResult.values()) {
+            submitTimers.put(result, Timer.builder("hacom.sms.submit.time")
+                    .description("Round trip from sending submit_sm until its response or timeout")
+                    .tag("result", result.name())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofMillis(Math.max(1, smppConfig.getSubmitTimeoutMs())))
+                    .register(meterRegistry));
+        }
+
+        this.notificationScheduler = ExecutionSchedulers.blockingScheduler(executionConfig.getMode(),
+                "smpp-notification", smppConfig.getNotificationThreads(), smppConfig.getNotificationQueueCapacity());
+        this.maxPendingSubmits = smppConfig.getNotificationThreads() + smppConfig.getNotificationQueueCapacity();
+        this.rateLimiter = new TokenBucketRateLimiter(smppConfig.getMaxTps(), smppConfig.getMaxBurst());
+
+        meterRegistry.gauge("hacom.sms.queue.size", pendingSubmits);
+        logger.info("SMS submits run in {} mode", executionConfig.getMode());
     }
 
     @PostConstruct
@@ -44,78 +100,241 @@ public class SmppService {
             return;
         }
 
-        try {
-            logger.info("Initializing SMPP client with host: {}:{}", smppConfig.getHost(), smppConfig.getPort());
+        logger.info("Initializing SMPP client with host: {}:{}, {} sessions with window size {}, limited to {} TPS",
+                smppConfig.getHost(), smppConfig.getPort(), smppConfig.getSessionCount(),
+                smppConfig.getWindowSize(), smppConfig.getMaxTps());
 
-            // Create SMPP client
-            smppClient = new DefaultSmppClient();
+        // Create SMPP client
+        smppClient = new DefaultSmppClient();
+        sessions = new SmppSession[smppConfig.getSessionCount()];
 
-            // Configure session
-            SmppSessionConfiguration config = new SmppSessionConfiguration();
-            config.setWindowSize(1);
-            config.setName("HacomSMPP");
-            config.setType(SmppBindType.TRANSCEIVER);
-            config.setHost(smppConfig.getHost());
-            config.setPort(smppConfig.getPort());
-            config.setSystemId(smppConfig.getSystemId());
-            config.setPassword(smppConfig.getPassword());
-            config.setSystemType(smppConfig.getSystemType());
-            config.setInterfaceVersion(smppConfig.getInterfaceVersion());
-            config.setAddressRange(new Address((byte) 0x00, (byte) 0x00, ""));
-
-            // Create session
-            smppSession = smppClient.bind(config, new DefaultSmppSessionHandler());
+        for (int i = 0; i < sessions.length; i++) {
+            bindSession(i);
+        }
 
-            logger.info("SMPP session established successfully");
+        // Keeps sessions alive with enquire_link and rebinds the ones that dropped
+        keepAliveExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "smpp-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        keepAliveExecutor.scheduleWithFixedDelay(this::keepAlive,
+                smppConfig.getEnquireLinkIntervalMs(), smppConfig.getEnquireLinkIntervalMs(), TimeUnit.MILLISECONDS);
+    }
 
+    private void bindSession(int index) {
+        try {
+            sessions[index] = smppClient.bind(sessionConfiguration(index), new SubmitResponseHandler(index));
+            logger.info("SMPP session {} established successfully", index);
         } catch (Exception e) {
-            logger.error("Failed to initialize SMPP client: {}", e.getMessage(), e);
+            logger.error("Failed to bind SMPP session {}: {}", index, e.getMessage(), e);
         }
     }
 
-    public boolean sendSms(String phoneNumber, String message) {
-        if (!smppConfig.isEnabled() || smppSession == null || !smppSession.isBound()) {
-            logger.warn("SMPP service is not available or session not bound");
-            return false;
+    private void keepAlive() {
+        for (int i = 0; i < sessions.length; i++) {
+            SmppSession session = sessions[i];
+
+            if (session == null || !session.isBound()) {
+                logger.info("SMPP session {} is not bound, rebinding", i);
+                closeSession(session);
+                sessions[i] = null;
+                bindSession(i);
+                continue;
+            }
+
+            try {
+                session.enquireLink(new EnquireLink(), smppConfig.getEnquireLinkTimeoutMs());
+            } catch (Exception e) {
+                logger.warn("enquire_link failed on SMPP session {}, rebinding: {}", i, e.getMessage());
+                closeSession(session);
+                sessions[i] = null;
+                bindSession(i);
+            }
         }
+    }
 
+    private void closeSession(SmppSession session) {
+        if (session == null) {
+            return;
+        }
         try {
-            logger.info("Sending SMS to {} with message: {}", phoneNumber, message);
+            session.close();
+            session.destroy();
+        } catch (Exception e) {
+            logger.debug("Error closing SMPP session: {}", e.getMessage());
+        }
+    }
+
+    private SmppSessionConfiguration sessionConfiguration(int index) {
+        SmppSessionConfiguration config = new SmppSessionConfiguration();
+        config.setWindowSize(smppConfig.getWindowSize());
+        config.setName("HacomSMPP-" + index);
+        config.setType(SmppBindType.TRANSCEIVER);
+        config.setHost(smppConfig.getHost());
+        config.setPort(smppConfig.getPort());
+        config.setSystemId(smppConfig.getSystemId());
+        config.setPassword(smppConfig.getPassword());
+        config.setSystemType(smppConfig.getSystemType());
+        config.setInterfaceVersion(smppConfig.getInterfaceVersion());
+        config.setAddressRange(new Address((byte) 0x00, (byte) 0x00, ""));
+        return config;
+    }
+
+    public Mono<SmsSubmitResult> submitSms(String phoneNumber, String message) {
+        // Only the rate limiter and acquiring a window slot block; the response completes on the session's I/O thread
+        return Mono.defer(() -> {
+                    // Virtual threads don't reject on their own, so the cap is enforced here for every mode
+                    if (pendingSubmits.incrementAndGet() > maxPendingSubmits) {
+                        pendingSubmits.decrementAndGet();
+                        return Mono.error(new RejectedExecutionException("Too many SMS submits pending"));
+                    }
+                    return Mono.fromCallable(() -> {
+                                try {
+                                    return submit(phoneNumber, message);
+                                } finally {
+                                    pendingSubmits.decrementAndGet();
+                                }
+                            })
+                            .subscribeOn(notificationScheduler)
+                            .doOnError(RejectedExecutionException.class, e -> pendingSubmits.decrementAndGet());
+                })
+                .flatMap(Mono::fromFuture)
+                .onErrorResume(e -> {
+                    if (e instanceof RejectedExecutionException) {
+                        logger.warn("SMS notification queue is full, rejecting SMS to {}", phoneNumber);
+                        smsRejectedCounter.increment();
+                        return Mono.just(SmsSubmitResult.RETRYABLE_FAILURE);
+                    }
+                    if (e instanceof UnrecoverablePduException) {
+                        logger.error("Failed to encode SMS to {}: {}", phoneNumber, e.getMessage(), e);
+                        return Mono.just(SmsSubmitResult.PERMANENT_FAILURE);
+                    }
+                    logger.error("Failed to send SMS to {}: {}", phoneNumber, e.getMessage(), e);
+                    return Mono.just(SmsSubmitResult.RETRYABLE_FAILURE);
+                });
+    }
+
+    private CompletableFuture<SmsSubmitResult> submit(String phoneNumber, String message)
+            throws RecoverablePduException, UnrecoverablePduException, SmppTimeoutException,
+            SmppChannelException, InterruptedException {
+        SmppSession session = nextSession();
+        if (session == null) {
+            logger.warn("SMPP service is not available or no session bound");
+            return CompletableFuture.completedFuture(SmsSubmitResult.RETRYABLE_FAILURE);
+        }
+
+        rateLimiter.acquire();
+
+        logger.debug("Sending SMS to {} with message: {}", phoneNumber, message);
+
+        SubmitSm submitSm = new SubmitSm();
+        submitSm.setSourceAddress(new Address(smppConfig.getAddressTon(),
+                smppConfig.getAddressNpi(),
+                smppConfig.getSourceAddress()));
+        submitSm.setDestAddress(new Address(smppConfig.getAddressTon(),
+                smppConfig.getAddressNpi(),
+                phoneNumber));
+        submitSm.setShortMessage(message.getBytes());
 
-            SubmitSm submitSm = new SubmitSm();
-            submitSm.setSourceAddress(new Address(smppConfig.getAddressTon(),
-                    smppConfig.getAddressNpi(),
-                    smppConfig.getSourceAddress()));
-            submitSm.setDestAddress(new Address(smppConfig.getAddressTon(),
-                    smppConfig.getAddressNpi(),
-                    phoneNumber));
-            submitSm.setShortMessage(message.getBytes());
+        // submit_sm_resp is correlated back to this future through the PDU reference object
+        PendingSubmit pending = new PendingSubmit();
+        submitSm.setReferenceObject(pending);
 
-            // Send the message
-            smppSession.submit(submitSm, 10000);
+        long sentAtNanos = System.nanoTime();
+        // cloudhopper's window API is declared with raw PDU types
+        @SuppressWarnings("rawtypes")
+        WindowFuture<Integer, PduRequest, PduResponse> windowFuture =
+                session.sendRequestPdu(submitSm, smppConfig.getSubmitTimeoutMs(), false);
 
+        return pending.response
+                .orTimeout(smppConfig.getSubmitTimeoutMs(), TimeUnit.MILLISECONDS)
+                .handle((response, error) -> toSubmitResult(phoneNumber, windowFuture, response, error))
+                .whenComplete((result, error) -> {
+                    if (result != null) {
+                        submitTimers.get(result).record(System.nanoTime() - sentAtNanos, TimeUnit.NANOSECONDS);
+                    }
+                });
+    }
+
+    @SuppressWarnings("rawtypes")
+    private SmsSubmitResult toSubmitResult(String phoneNumber, WindowFuture<Integer, PduRequest, PduResponse> windowFuture,
+                                           SubmitSmResp response, Throwable error) {
+        if (error != null) {
+            // Free the window slot held by the unanswered request
+            windowFuture.cancel();
+            logger.error("SMS submit to {} failed: {}", phoneNumber, error.getMessage());
+            return SmsSubmitResult.RETRYABLE_FAILURE;
+        }
+
+        int commandStatus = response.getCommandStatus();
+        if (commandStatus == SmppConstants.STATUS_OK) {
             // Increment counter for metrics
             smsCounter.increment();
 
-            logger.info("SMS sent successfully to {}", phoneNumber);
-            return true;
+            logger.debug("SMS sent successfully to {}", phoneNumber);
+            return SmsSubmitResult.SENT;
+        }
+
+        logger.warn("SMSC rejected SMS to {} with status {}", phoneNumber, commandStatus);
+        return isRetryable(commandStatus)
+                ? SmsSubmitResult.RETRYABLE_FAILURE
+                : SmsSubmitResult.PERMANENT_FAILURE;
+    }
+
+    private static boolean isRetryable(int commandStatus) {
+        return commandStatus == SmppConstants.STATUS_THROTTLED
+                || commandStatus == SmppConstants.STATUS_MSGQFUL
+                || commandStatus == SmppConstants.STATUS_SYSERR;
+    }
 
-        } catch (RecoverablePduException | SmppTimeoutException | SmppChannelException | UnrecoverablePduException | InterruptedException e) {
-            logger.error("Failed to send SMS to {}: {}", phoneNumber, e.getMessage(), e);
-            return false;
+    // Picks the bound session with the fewest requests in flight, starting from a rotating offset
+    private SmppSession nextSession() {
+        SmppSession[] current = sessions;
+        if (!smppConfig.isEnabled() || current == null) {
+            return null;
         }
+
+        int offset = Math.floorMod(nextSession.getAndIncrement(), current.length);
+        SmppSession selected = null;
+        int selectedInFlight = Integer.MAX_VALUE;
+
+        for (int i = 0; i < current.length; i++) {
+            SmppSession session = current[(offset + i) % current.length];
+            if (session == null || !session.isBound()) {
+                continue;
+            }
+
+            int inFlight = session.getSendWindow().getSize();
+            if (inFlight < selectedInFlight) {
+                selected = session;
+                selectedInFlight = inFlight;
+            }
+        }
+
+        return selected;
     }
 
     @PreDestroy
     public void destroy() {
         logger.info("Shutting down SMPP service");
 
-        if (smppSession != null && smppSession.isBound()) {
-            try {
-                smppSession.unbind(5000);
-                logger.info("SMPP session unbound successfully");
-            } catch (Exception e) {
-                logger.error("Error unbinding SMPP session: {}", e.getMessage(), e);
+        if (keepAliveExecutor != null) {
+            keepAliveExecutor.shutdownNow();
+        }
+
+        notificationScheduler.dispose();
+
+        if (sessions != null) {
+            for (SmppSession session : sessions) {
+                if (session != null && session.isBound()) {
+                    try {
+                        session.unbind(5000);
+                        logger.info("SMPP session {} unbound successfully", session.getConfiguration().getName());
+                    } catch (Exception e) {
+                        logger.error("Error unbinding SMPP session: {}", e.getMessage(), e);
+                    }
+                }
             }
         }
 
@@ -124,4 +343,33 @@ public class SmppService {
             logger.info("SMPP client destroyed");
         }
     }
-}
\ No newline at end of file
+
+    private static final class PendingSubmit {
+        private final CompletableFuture<SubmitSmResp> response = new CompletableFuture<>();
+    }
+
+    private static class SubmitResponseHandler extends DefaultSmppSessionHandler {
+
+        private final int index;
+
+        private SubmitResponseHandler(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void fireExpectedPduResponseReceived(PduAsyncResponse pduAsyncResponse) {
+            if (pduAsyncResponse.getRequest().getReferenceObject() instanceof PendingSubmit pending
+                    && pduAsyncResponse.getResponse() instanceof SubmitSmResp response) {
+                pending.response.complete(response);
+            } else {
+                super.fireExpectedPduResponseReceived(pduAsyncResponse);
+            }
+        }
+
+        @Override
+        public void fireChannelUnexpectedlyClosed() {
+            // The keepalive task notices the unbound session and rebinds it
+            logger.warn("SMPP session {} closed unexpectedly", index);
+        }
+    }
+}
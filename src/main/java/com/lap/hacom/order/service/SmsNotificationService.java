@@ -0,0 +1,204 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.config.SmppConfig;
+import com.lap.hacom.order.model.SmsNotification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends SMS notifications through {@link SmppService} and makes sure a failed submit is not lost:
+ * retryable failures go to a persistent retry queue with exponential backoff, and messages that
+ * cannot be delivered end up in a dead-letter collection.
+ */
+@Service
+public class SmsNotificationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmsNotificationService.class);
+
+    public static final String RETRY_COLLECTION = "sms_retry_queue";
+    public static final String DEAD_LETTER_COLLECTION = "sms_dead_letters";
+
+    private final SmppService smppService;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final SmppConfig smppConfig;
+
+    private final Counter retryCounter;
+    private final Counter deadLetterCounter;
+    private final AtomicLong retryQueueDepth = new AtomicLong();
+
+    private Disposable retryPoller;
+
+    @Autowired
+    public SmsNotificationService(SmppService smppService, ReactiveMongoTemplate mongoTemplate,
+                                  SmppConfig smppConfig, MeterRegistry meterRegistry) {
+        this.smppService = smppService;
+        this.mongoTemplate = mongoTemplate;
+        this.smppConfig = smppConfig;
+        this.retryCounter = Counter.builder("hacom.sms.retries.total")
+                .description("Total number of SMS submit retries")
+                .register(meterRegistry);
+        this.deadLetterCounter = Counter.builder("hacom.sms.dropped.total")
+                .description("SMS notifications moved to the dead-letter store")
+                .register(meterRegistry);
+
+        meterRegistry.gauge("hacom.sms.retry.queue.size", retryQueueDepth);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!smppConfig.isEnabled()) {
+            return;
+        }
+
+        logger.info("Starting SMS retry poller every {} ms", smppConfig.getRetryPollIntervalMs());
+
+        retryPoller = Flux.interval(Duration.ofMillis(smppConfig.getRetryPollIntervalMs()))
+                .onBackpressureDrop()
+                .concatMap(tick -> processDueRetries()
+                        .onErrorResume(error -> {
+                            logger.error("Error processing SMS retry queue: {}", error.getMessage(), error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    /**
+     * Resolves to true if the SMS was accepted by the SMSC. A false result means it was
+     * handed to the retry queue or dead-lettered, not that it was lost.
+     */
+    public Mono<Boolean> send(String phoneNumber, String message) {
+        if (!smppConfig.isEnabled()) {
+            return Mono.just(false);
+        }
+
+        return smppService.submitSms(phoneNumber, message)
+                .flatMap(result -> switch (result) {
+                    case SENT -> Mono.just(true);
+                    case RETRYABLE_FAILURE -> enqueueRetry(phoneNumber, message, result).thenReturn(false);
+                    case PERMANENT_FAILURE -> deadLetter(newNotification(phoneNumber, message, result)).thenReturn(false);
+                });
+    }
+
+    private Mono<Void> enqueueRetry(String phoneNumber, String message, SmsSubmitResult result) {
+        SmsNotification notification = newNotification(phoneNumber, message, result);
+        notification.setNextAttemptAt(Instant.now().plus(backoff(1)));
+
+        return mongoTemplate.insert(notification, RETRY_COLLECTION)
+                .doOnSuccess(saved -> logger.debug("SMS to {} queued for retry", phoneNumber))
+                .doOnError(error -> {
+                    logger.error("Failed to queue SMS to {} for retry: {}", phoneNumber, error.getMessage(), error);
+                    deadLetterCounter.increment();
+                })
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private Mono<Void> processDueRetries() {
+        return Flux.range(0, smppConfig.getRetryBatchSize())
+                .concatMap(i -> claimNextDue().map(Optional::of).defaultIfEmpty(Optional.empty()))
+                .takeWhile(Optional::isPresent)
+                .map(Optional::get)
+                .flatMap(this::retry, smppConfig.getNotificationThreads())
+                .then(mongoTemplate.count(new Query(), RETRY_COLLECTION))
+                .doOnNext(retryQueueDepth::set)
+                .then();
+    }
+
+    // Pushing nextAttemptAt forward acts as a lease, so other instances skip the entry meanwhile
+    private Mono<SmsNotification> claimNextDue() {
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plusMillis(smppConfig.getSubmitTimeoutMs() * 2);
+
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("nextAttemptAt").lte(now)),
+                new Update().set("nextAttemptAt", leaseUntil),
+                FindAndModifyOptions.options().returnNew(true),
+                SmsNotification.class,
+                RETRY_COLLECTION);
+    }
+
+    private Mono<Void> retry(SmsNotification notification) {
+        retryCounter.increment();
+        int attempt = notification.getAttempts() + 1;
+
+        return smppService.submitSms(notification.getPhoneNumber(), notification.getMessage())
+                .flatMap(result -> {
+                    if (result == SmsSubmitResult.SENT) {
+                        logger.info("SMS to {} delivered on attempt {}", notification.getPhoneNumber(), attempt);
+                        return removeFromRetryQueue(notification);
+                    }
+
+                    notification.setAttempts(attempt);
+                    notification.setLastError(result.name());
+
+                    if (result == SmsSubmitResult.PERMANENT_FAILURE || attempt >= smppConfig.getRetryMaxAttempts()) {
+                        return deadLetter(notification).then(removeFromRetryQueue(notification));
+                    }
+
+                    return mongoTemplate.updateFirst(
+                                    Query.query(Criteria.where("_id").is(notification.get_id())),
+                                    new Update()
+                                            .set("attempts", attempt)
+                                            .set("lastError", result.name())
+                                            .set("nextAttemptAt", Instant.now().plus(backoff(attempt))),
+                                    RETRY_COLLECTION)
+                            .then();
+                });
+    }
+
+    private Mono<Void> removeFromRetryQueue(SmsNotification notification) {
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").is(notification.get_id())), RETRY_COLLECTION)
+                .then();
+    }
+
+    private Mono<Void> deadLetter(SmsNotification notification) {
+        logger.warn("Moving SMS to {} to dead-letter store after {} attempts: {}",
+                notification.getPhoneNumber(), notification.getAttempts(), notification.getLastError());
+        deadLetterCounter.increment();
+
+        notification.setNextAttemptAt(null);
+        return mongoTemplate.save(notification, DEAD_LETTER_COLLECTION)
+                .doOnError(error -> logger.error("Failed to dead-letter SMS to {}: {}",
+                        notification.getPhoneNumber(), error.getMessage(), error))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    // Exponential backoff capped at retryMaxBackoffMs, jittered so retries don't arrive in waves
+    private Duration backoff(int attempt) {
+        long exponential = smppConfig.getRetryInitialBackoffMs() << Math.min(attempt - 1, 20);
+        long capped = Math.min(exponential, smppConfig.getRetryMaxBackoffMs());
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(capped / 2, capped + 1));
+    }
+
+    private static SmsNotification newNotification(String phoneNumber, String message, SmsSubmitResult result) {
+        return new SmsNotification(null, phoneNumber, message, 1, null, result.name(), Instant.now());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (retryPoller != null) {
+            retryPoller.dispose();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.lap.hacom.order.service;
+
+public enum SmsSubmitResult {
+
+    SENT,
+
+    // Throttling, queue-full, timeouts or a dropped session; worth trying again later
+    RETRYABLE_FAILURE,
+
+    // The SMSC rejected the message itself; retrying will not help
+    PERMANENT_FAILURE
+}
@@ -0,0 +1,43 @@
+package com.lap.hacom.order.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket expressed as a theoretical arrival time (GCRA): each permit pushes the
+ * next free slot forward by one token interval, and up to {@code burst} permits may be
+ * taken ahead of schedule.
+ */
+public class TokenBucketRateLimiter {
+
+    private final long nanosPerPermit;
+    private final long burstToleranceNanos;
+
+    private long theoreticalArrivalNanos;
+
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.nanosPerPermit = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstToleranceNanos = nanosPerPermit * Math.max(0, burst - 1);
+        this.theoreticalArrivalNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves a permit and returns how long the caller has to wait before using it.
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        long arrival = Math.max(theoreticalArrivalNanos, now);
+        long waitNanos = Math.max(0, arrival - burstToleranceNanos - now);
+        theoreticalArrivalNanos = arrival + nanosPerPermit;
+        return waitNanos;
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
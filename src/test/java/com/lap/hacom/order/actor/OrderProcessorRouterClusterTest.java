@@ -0,0 +1,256 @@
+package com.lap.hacom.order.actor;
+
+import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
+import akka.cluster.sharding.ClusterSharding;
+import akka.cluster.sharding.ShardRegion;
+import akka.pattern.Patterns;
+import com.lap.hacom.order.config.AkkaConfig;
+import com.lap.hacom.order.config.ClusterConfig;
+import com.lap.hacom.order.config.ExecutionConfig;
+import com.lap.hacom.order.grpc.CreateOrderResponse;
+import com.lap.hacom.order.journal.OrderJournal;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OutboxMessage;
+import com.lap.hacom.order.service.OrderBatchWriter;
+import com.lap.hacom.order.service.OrderEventBus;
+import com.lap.hacom.order.service.OrderIdIndex;
+import com.lap.hacom.order.service.OrderStatusCache;
+import com.lap.hacom.order.service.SmsNotificationService;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two nodes on loopback ports forming a real cluster, each with its own {@link OrderProcessorRouter}
+ * over mocked storage. Orders go through Cluster Sharding, the remote transport and the
+ * Jackson serialization binding; each node's mocks record which node processed an order.
+ */
+class OrderProcessorRouterClusterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int NUMBER_OF_SHARDS = 8;
+    // Orders with this prefix are never stored, so their shard never answers
+    private static final String STUCK_PREFIX = "stuck-";
+
+    // customerId -> nodes that processed its orders
+    private static final Map<String, Set<String>> processedOn = new ConcurrentHashMap<>();
+
+    private static Node first;
+    private static Node second;
+
+    private record Node(String name, ActorSystem actorSystem, OrderProcessorRouter router, MeterRegistry meterRegistry) {
+    }
+
+    @BeforeAll
+    static void startCluster() throws IOException {
+        int firstPort = freePort();
+        int secondPort = freePort();
+        String seedNode = "akka://HacomOrderProcessingSystem@127.0.0.1:" + firstPort;
+
+        first = startNode("first", firstPort, seedNode);
+        second = startNode("second", secondPort, seedNode);
+
+        // Shards are only allocated to regions the coordinator knows, so wait for both
+        await().atMost(TIMEOUT).until(() -> upMembers(first) == 2 && upMembers(second) == 2);
+        await().atMost(TIMEOUT).until(() -> registeredRegions(first) == 2);
+    }
+
+    @AfterAll
+    static void stopCluster() throws Exception {
+        for (Node node : List.of(second, first)) {
+            if (node != null) {
+                node.router().destroy();
+                node.actorSystem().terminate();
+                node.actorSystem().getWhenTerminated().toCompletableFuture().get(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    void ordersOfACustomerLandOnOneEntityAndRepliesComeBackToTheRoutingNode() throws Exception {
+        List<String> customers = new ArrayList<>();
+        Map<String, CompletableFuture<CreateOrderResponse>> responses = new ConcurrentHashMap<>();
+
+        for (int customer = 0; customer < 16; customer++) {
+            String customerId = "customer-" + customer;
+            customers.add(customerId);
+            for (int order = 0; order < 3; order++) {
+                // Alternate the receiving node so both route to shards owned by the other one
+                Node receivingNode = order % 2 == 0 ? first : second;
+                String orderId = customerId + "-order-" + order;
+                responses.put(orderId, route(receivingNode, orderId, customerId));
+            }
+        }
+
+        for (Map.Entry<String, CompletableFuture<CreateOrderResponse>> response : responses.entrySet()) {
+            CreateOrderResponse reply = response.getValue().get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+            assertEquals(response.getKey(), reply.getOrderId());
+            assertEquals("COMPLETED", reply.getStatus());
+        }
+
+        for (String customerId : customers) {
+            assertEquals(1, processedOn.get(customerId).size(), customerId + " was processed on " + processedOn.get(customerId));
+        }
+        // Both nodes own shards, so some replies crossed the cluster back to the other node's listener
+        Set<String> processingNodes = customers.stream()
+                .flatMap(customerId -> processedOn.get(customerId).stream())
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("first", "second"), processingNodes);
+
+        // Each shard entity runs on exactly one node
+        Set<String> firstShards = entityShards(first);
+        Set<String> secondShards = entityShards(second);
+        assertTrue(firstShards.stream().noneMatch(secondShards::contains), firstShards + " and " + secondShards);
+        for (String customerId : customers) {
+            String shardId = String.valueOf(Math.floorMod(customerId.hashCode(), NUMBER_OF_SHARDS));
+            String node = processedOn.get(customerId).iterator().next();
+            assertTrue((node.equals("first") ? firstShards : secondShards).contains(shardId),
+                    customerId + " processed on " + node + " which doesn't host shard " + shardId);
+        }
+    }
+
+    @Test
+    void orderWithoutAnAnswerFailsUnavailableOnceTheReplyTimeoutPasses() {
+        long startNanos = System.nanoTime();
+        CompletableFuture<CreateOrderResponse> response = route(first, STUCK_PREFIX + "order-1", "customer-stuck");
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> response.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        Status status = Status.fromThrowable(assertInstanceOf(RuntimeException.class, failure.getCause()));
+        assertEquals(Status.Code.UNAVAILABLE, status.getCode());
+        assertEquals("No answer from the order's processor shard", status.getDescription());
+        // Reply timeout of 1s, swept every second
+        assertTrue(elapsedMillis >= 1000 && elapsedMillis < 5000, "failed after " + elapsedMillis + " ms");
+    }
+
+    private static CompletableFuture<CreateOrderResponse> route(Node node, String orderId, String customerId) {
+        CompletableFuture<CreateOrderResponse> response = new CompletableFuture<>();
+        assertTrue(node.router().route(new OrderProcessorActor.ProcessOrderMessage(orderId, customerId,
+                "+51999000001", List.of("item-1"), false, null, new StreamObserver<>() {
+                    private CreateOrderResponse value;
+
+                    @Override
+                    public void onNext(CreateOrderResponse value) {
+                        this.value = value;
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        response.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        response.complete(value);
+                    }
+                })));
+        return response;
+    }
+
+    private static Node startNode(String name, int port, String seedNode) {
+        ClusterConfig clusterConfig = new ClusterConfig();
+        clusterConfig.setEnabled(true);
+        clusterConfig.setPort(port);
+        clusterConfig.setSeedNodes(List.of(seedNode));
+        clusterConfig.setNumberOfShards(NUMBER_OF_SHARDS);
+        clusterConfig.setReplyTimeoutMs(1000);
+
+        AkkaConfig akkaConfig = new AkkaConfig();
+        ReflectionTestUtils.setField(akkaConfig, "parallelismMin", 2);
+        ReflectionTestUtils.setField(akkaConfig, "parallelismFactor", 1.0);
+        ReflectionTestUtils.setField(akkaConfig, "parallelismMax", 4);
+        ReflectionTestUtils.setField(akkaConfig, "throughput", 10);
+        ReflectionTestUtils.setField(akkaConfig, "mailboxCapacity", 1000);
+        ReflectionTestUtils.setField(akkaConfig, "executionConfig", new ExecutionConfig());
+        ReflectionTestUtils.setField(akkaConfig, "clusterConfig", clusterConfig);
+        ActorSystem actorSystem = akkaConfig.actorSystem();
+
+        OrderIdIndex orderIdIndex = mock(OrderIdIndex.class);
+        when(orderIdIndex.isKnown(anyString())).thenReturn(Mono.just(false));
+
+        OrderBatchWriter orderBatchWriter = mock(OrderBatchWriter.class);
+        when(orderBatchWriter.insert(any(Order.class), any(OutboxMessage.class))).thenAnswer(call -> {
+            Order order = call.getArgument(0);
+            processedOn.computeIfAbsent(order.getCustomerId(), customerId -> ConcurrentHashMap.newKeySet()).add(name);
+            return order.getOrderId().startsWith(STUCK_PREFIX) ? Mono.never() : Mono.just(order);
+        });
+        when(orderBatchWriter.updateStatus(anyString(), eq("COMPLETED"))).thenAnswer(call -> Mono.just(
+                new Order(new ObjectId(), call.getArgument(0), "customer", "+51999000001", "COMPLETED",
+                        List.of("item-1"), OffsetDateTime.now())));
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderProcessorRouter router = new OrderProcessorRouter(actorSystem, orderBatchWriter,
+                mock(SmsNotificationService.class), mock(OrderStatusCache.class), orderIdIndex,
+                mock(OrderEventBus.class), mock(OrderJournal.class), clusterConfig, meterRegistry, 4, 1000, 0.0);
+        return new Node(name, actorSystem, router, meterRegistry);
+    }
+
+    private static long upMembers(Node node) {
+        return StreamSupport.stream(Cluster.get(node.actorSystem()).state().getMembers().spliterator(), false)
+                .map(Member::status)
+                .filter(MemberStatus.up()::equals)
+                .count();
+    }
+
+    private static int registeredRegions(Node node) throws Exception {
+        ActorSystem actorSystem = node.actorSystem();
+        Object stats = Patterns.ask(ClusterSharding.get(actorSystem).shardRegion("OrderProcessor"),
+                        new ShardRegion.GetClusterShardingStats(scala.concurrent.duration.Duration.create(5, TimeUnit.SECONDS)),
+                        Duration.ofSeconds(10))
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+        return ((ShardRegion.ClusterShardingStats) stats).getRegions().size();
+    }
+
+    // Shard entities register their mailbox gauge on the node they run on
+    private static Set<String> entityShards(Node node) {
+        return node.meterRegistry().find("hacom.orders.shard.mailbox.depth").gauges().stream()
+                .map(Gauge::getId)
+                .map(id -> id.getTag("shard"))
+                .collect(Collectors.toSet());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
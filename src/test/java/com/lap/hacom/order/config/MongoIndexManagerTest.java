@@ -0,0 +1,171 @@
+package com.lap.hacom.order.config;
+
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OutboxMessage;
+import com.lap.hacom.order.service.SmsNotificationService;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Sorts.ascending;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs against a real mongod, see {@link MongoTestServer}; skipped without MONGODB_TEST_URI or Docker.
+ * Every test works in a database of its own and drops it afterwards.
+ */
+class MongoIndexManagerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static String connectionString;
+
+    private MongoClient client;
+    private ReactiveMongoTemplate mongoTemplate;
+    private Sinks.Empty<Void> migrated;
+    private MongoIndexManager indexManager;
+
+    // Skips the class before any test or teardown runs when there is no mongod
+    @BeforeAll
+    static void startMongo() {
+        connectionString = MongoTestServer.connectionString();
+    }
+
+    @BeforeEach
+    void setUp() {
+        client = MongoClients.create(connectionString);
+        mongoTemplate = new ReactiveMongoTemplate(client, "index-test-" + UUID.randomUUID());
+        migrated = Sinks.empty();
+        OrderStorageMigration migration = mock(OrderStorageMigration.class);
+        when(migration.migrated()).thenReturn(migrated.asMono());
+        indexManager = new MongoIndexManager(mongoTemplate, migration, 168);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getMongoDatabase().flatMap(database -> Mono.from(database.drop())).block(TIMEOUT);
+        client.close();
+    }
+
+    @Test
+    void repositoryQueriesUseTheirIndex() {
+        assertEquals(0L, indexManager.createIndexes().block(TIMEOUT));
+        insertOrders(200);
+
+        Date from = new Date(1_000_000L);
+        Date to = new Date(2_000_000L);
+
+        assertUsesIndex(orders(), eq(OrderCodec.ORDER_ID, "order-7"), null, "oid_unique");
+        assertUsesIndex(orders(), and(gte(OrderCodec.TS, from), lt(OrderCodec.TS, to)), null, "ts_id");
+        assertUsesIndex(orders(), and(gte(OrderCodec.TS, from), lt(OrderCodec.TS, to)),
+                ascending(OrderCodec.TS, OrderCodec.ID), "ts_id");
+        assertUsesIndex(orders(), and(eq(OrderCodec.CUSTOMER_ID, "customer-3"), gte(OrderCodec.TS, from)),
+                null, "cid_ts");
+        assertUsesIndex(orders(), and(eq(OrderCodec.STATUS, "COMPLETED"), lt(OrderCodec.TS, to)), null, "st_ts");
+
+        MongoCollection<Document> outbox = collection(mongoTemplate.getCollectionName(OutboxMessage.class));
+        assertUsesIndex(outbox, lte("leaseUntil", new Date()), ascending("leaseUntil"), "leaseUntil");
+        assertUsesIndex(outbox, eq("leaseOwner", "token"), null, "leaseOwner");
+        assertUsesIndex(collection(SmsNotificationService.RETRY_COLLECTION), lte("nextAttemptAt", new Date()),
+                null, "nextAttemptAt");
+    }
+
+    @Test
+    void indexesWaitForTheLegacyMigration() {
+        insertOrders(1);
+        indexManager.ensureIndexes();
+        assertEquals(Set.of("_id_"), indexNames());
+
+        migrated.tryEmitEmpty();
+        await().atMost(TIMEOUT).until(() -> indexNames().containsAll(Set.of("oid_unique", "dispatchedAt_ttl")));
+    }
+
+    @Test
+    void failedIndexDoesNotStopTheOthers() {
+        // Same name as ts_id with other keys, so ensuring ts_id fails
+        Mono.from(orders().createIndex(new Document(OrderCodec.TS, 1), new IndexOptions().name("ts_id"))).block(TIMEOUT);
+
+        assertEquals(1L, indexManager.createIndexes().block(TIMEOUT));
+        assertTrue(indexNames().containsAll(Set.of("oid_unique", "cid_ts", "st_ts")));
+        assertTrue(mongoTemplate.indexOps(OutboxMessage.class).getIndexInfo().map(IndexInfo::getName)
+                .collect(Collectors.toSet()).block(TIMEOUT).contains("dispatchedAt_ttl"));
+    }
+
+    private void insertOrders(int count) {
+        List<Document> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            orders.add(new Document(OrderCodec.ORDER_ID, "order-" + i)
+                    .append(OrderCodec.CUSTOMER_ID, "customer-" + (i % 10))
+                    .append(OrderCodec.STATUS, i % 2 == 0 ? "COMPLETED" : "PROCESSING")
+                    .append(OrderCodec.TS, new Date(i * 10_000L))
+                    .append(OrderCodec.TZ, 0));
+        }
+        Mono.from(orders().insertMany(orders)).block(TIMEOUT);
+    }
+
+    private void assertUsesIndex(MongoCollection<Document> collection, Bson filter, Bson sort, String index) {
+        Document explain = Mono.from(collection.find(filter).sort(sort).explain(Document.class)).block(TIMEOUT);
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        List<String> scanned = new ArrayList<>();
+        collectIndexScans(winningPlan, scanned);
+        assertEquals(List.of(index), scanned, () -> "Expected an IXSCAN on " + index + " for " + filter
+                + ", winning plan was " + winningPlan.toJson());
+    }
+
+    // Walks inputStage(s) and the queryPlan wrapper of slot based plans
+    private static void collectIndexScans(Object node, List<String> scanned) {
+        if (node instanceof Document stage) {
+            if ("IXSCAN".equals(stage.getString("stage"))) {
+                scanned.add(stage.getString("indexName"));
+            }
+            stage.values().forEach(child -> collectIndexScans(child, scanned));
+        } else if (node instanceof List<?> stages) {
+            stages.forEach(child -> collectIndexScans(child, scanned));
+        }
+    }
+
+    private Set<String> indexNames() {
+        return Flux.from(orders().listIndexes())
+                .map(index -> index.getString("name"))
+                .collect(Collectors.toSet())
+                .block(TIMEOUT);
+    }
+
+    private MongoCollection<Document> orders() {
+        return collection(mongoTemplate.getCollectionName(Order.class));
+    }
+
+    private MongoCollection<Document> collection(String name) {
+        return mongoTemplate.getMongoDatabase().map(database -> database.getCollection(name)).block(TIMEOUT);
+    }
+}
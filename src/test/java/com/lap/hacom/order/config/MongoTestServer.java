@@ -0,0 +1,38 @@
+package com.lap.hacom.order.config;
+
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MongoDBContainer;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The mongod the Mongo integration tests run against: {@code MONGODB_TEST_URI} when set, otherwise
+ * a {@code mongo} container started on first use and shared by all tests in the JVM. Tests are
+ * skipped when there is neither a URI nor a Docker daemon.
+ */
+final class MongoTestServer {
+
+    private static final String IMAGE = "mongo:7.0";
+
+    private static MongoDBContainer container;
+
+    private MongoTestServer() {
+    }
+
+    static synchronized String connectionString() {
+        String uri = System.getenv("MONGODB_TEST_URI");
+        if (uri != null && !uri.isBlank()) {
+            return uri;
+        }
+
+        if (container == null) {
+            assumeTrue(DockerClientFactory.instance().isDockerAvailable(),
+                    "Needs MONGODB_TEST_URI or a Docker daemon to start " + IMAGE);
+            // Stopped by Testcontainers' reaper when the JVM exits
+            MongoDBContainer started = new MongoDBContainer(IMAGE);
+            started.start();
+            container = started;
+        }
+        return container.getConnectionString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.lap.hacom.order.config;
+
+import com.lap.hacom.order.codec.ItemDictionary;
+import com.lap.hacom.order.codec.OrderCodec;
+import com.lap.hacom.order.model.Order;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs against a real mongod, see {@link MongoTestServer}; skipped without MONGODB_TEST_URI or Docker.
+ */
+class OrderStorageMigrationTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    // No DST, so the expected instants don't depend on the date
+    private static final ZoneId WRITER_ZONE = ZoneId.of("America/Lima");
+
+    private static String connectionString;
+
+    private MongoClient client;
+    private ReactiveMongoTemplate mongoTemplate;
+    private OrderCodec orderCodec;
+
+    // Skips the class before any test or teardown runs when there is no mongod
+    @BeforeAll
+    static void startMongo() {
+        connectionString = MongoTestServer.connectionString();
+    }
+
+    @BeforeEach
+    void setUp() {
+        client = MongoClients.create(connectionString);
+        mongoTemplate = new ReactiveMongoTemplate(client, "migration-test-" + UUID.randomUUID());
+        orderCodec = new OrderCodec(new ItemDictionary(List.of("Product A - Laptop")), WRITER_ZONE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.getMongoDatabase().flatMap(database -> Mono.from(database.drop())).block(TIMEOUT);
+        client.close();
+    }
+
+    @Test
+    void legacyOffsetDateTimeKeepsItsInstantAndOffset() {
+        OffsetDateTime ts = OffsetDateTime.parse("2025-05-01T10:15:30.123+09:00");
+        Document legacy = new Document(OrderCodec.LEGACY_ORDER_ID, "order-1")
+                .append(OrderCodec.LEGACY_CUSTOMER_ID, "customer-1")
+                .append(OrderCodec.LEGACY_PHONE, "+51999000001")
+                .append(OrderCodec.LEGACY_STATUS, "COMPLETED")
+                .append(OrderCodec.LEGACY_ITEMS, List.of("Product A - Laptop"))
+                .append(OrderCodec.TS, legacyTs(ts));
+        Mono.from(orders().insertOne(legacy)).block(TIMEOUT);
+
+        // Readable before the migration
+        Document stored = Mono.from(orders().find().first()).block(TIMEOUT);
+        assertEquals(ts, orderCodec.fromDocument(stored).getTs());
+
+        StorageConfig storageConfig = new StorageConfig();
+        storageConfig.setLegacyZone(WRITER_ZONE.getId());
+        OrderStorageMigration migration = new OrderStorageMigration(mongoTemplate, storageConfig);
+        migration.migrateLegacyOrders();
+        migration.migrated().block(TIMEOUT);
+
+        Document migrated = Mono.from(orders().find().first()).block(TIMEOUT);
+        assertEquals(Date.from(ts.toInstant()), migrated.getDate(OrderCodec.TS));
+        assertEquals(9 * 3600, migrated.getInteger(OrderCodec.TZ));
+        assertFalse(migrated.containsKey(OrderCodec.LEGACY_ORDER_ID));
+
+        Order order = orderCodec.fromDocument(migrated);
+        assertEquals(ts, order.getTs());
+        assertEquals("order-1", order.getOrderId());
+        assertEquals(List.of("Product A - Laptop"), order.getItems());
+    }
+
+    // What Spring Data's reflective mapping wrote for an OffsetDateTime from a JVM in WRITER_ZONE
+    private static Document legacyTs(OffsetDateTime ts) {
+        LocalDateTime wallTime = ts.toLocalDateTime();
+        return new Document(OrderCodec.LEGACY_TS_DATE_TIME, Date.from(wallTime.atZone(WRITER_ZONE).toInstant()))
+                .append(OrderCodec.LEGACY_TS_OFFSET,
+                        new Document(OrderCodec.LEGACY_TS_OFFSET_SECONDS, ts.getOffset().getTotalSeconds()));
+    }
+
+    private MongoCollection<Document> orders() {
+        return mongoTemplate.getMongoDatabase()
+                .map(database -> database.getCollection(mongoTemplate.getCollectionName(Order.class)))
+                .block(TIMEOUT);
+    }
+}
@@ -0,0 +1,155 @@
+package com.lap.hacom.order.journal;
+
+import com.lap.hacom.order.config.JournalConfig;
+import com.lap.hacom.order.model.Order;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderJournalRecoveryTest {
+
+    // Two 20-byte records per segment
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumesAfterCheckpointWithoutLosingOrRepeatingRecords() throws Exception {
+        OrderJournal journal = open(32);
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            payloads.add(payload(i));
+            append(journal, payloads.get(i));
+        }
+
+        List<OrderJournal.Entry> entries = journal.read(journal.checkpointPosition(), 10);
+        assertEquals(5, entries.size());
+        journal.checkpoint(entries.get(2).nextPosition());
+        journal.close();
+
+        OrderJournal reopened = open(32);
+        List<OrderJournal.Entry> remaining = reopened.read(reopened.checkpointPosition(), 10);
+        assertEquals(2, remaining.size());
+        assertArrayEquals(payloads.get(3), remaining.get(0).payload());
+        assertArrayEquals(payloads.get(4), remaining.get(1).payload());
+        reopened.close();
+    }
+
+    @Test
+    void discardsTornTailAndKeepsAppending() throws Exception {
+        OrderJournal journal = open(32);
+        append(journal, payload(0));
+        append(journal, payload(1));
+        long end = append(journal, payload(2)) + OrderJournal.HEADER_BYTES + 20;
+        journal.close();
+
+        // A crash in the middle of the next write: header on disk, payload and CRC don't match
+        long index = end / SEGMENT_SIZE;
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("%020d.seg", index)),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(12).putInt(20).putInt(0x1234).putInt(7).flip(), end % SEGMENT_SIZE);
+        }
+
+        OrderJournal reopened = open(32);
+        assertEquals(end, reopened.durablePosition());
+        assertEquals(3, reopened.read(0, 10).size());
+
+        append(reopened, payload(3));
+        List<OrderJournal.Entry> entries = reopened.read(0, 10);
+        assertEquals(4, entries.size());
+        assertArrayEquals(payload(3), entries.get(3).payload());
+        reopened.close();
+
+        OrderJournal again = open(32);
+        assertEquals(4, again.read(0, 10).size());
+        again.close();
+    }
+
+    @Test
+    void deletesReplayedSegments() throws Exception {
+        OrderJournal journal = open(32);
+        for (int i = 0; i < 5; i++) {
+            append(journal, payload(i));
+        }
+        assertTrue(Files.exists(directory.resolve(String.format("%020d.seg", 0))));
+
+        List<OrderJournal.Entry> entries = journal.read(0, 10);
+        journal.checkpoint(entries.get(3).nextPosition());
+
+        assertFalse(Files.exists(directory.resolve(String.format("%020d.seg", 0))));
+        List<OrderJournal.Entry> remaining = journal.read(journal.checkpointPosition(), 10);
+        assertEquals(1, remaining.size());
+        assertArrayEquals(payload(4), remaining.get(0).payload());
+        journal.close();
+    }
+
+    @Test
+    void refusesAppendsWhenReplayFallsBehind() throws Exception {
+        OrderJournal journal = open(2);
+        for (int i = 0; i < 4; i++) {
+            append(journal, payload(i));
+        }
+
+        CompletableFuture<Long> refused = journal.append("order-4", payload(4));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> refused.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(JournalFullException.class, error.getCause());
+
+        journal.checkpoint(journal.read(0, 10).get(2).nextPosition());
+        append(journal, payload(4));
+        assertEquals(2, journal.read(journal.checkpointPosition(), 10).size());
+        journal.close();
+    }
+
+    @Test
+    void codecRoundTripsOrders() {
+        Order order = new Order(new ObjectId(), "order-1", "customer-1", "+51999888777", "COMPLETED",
+                List.of("item-1", "item-2"), OffsetDateTime.of(2025, 5, 1, 10, 30, 0, 0, ZoneOffset.ofHours(-5)));
+
+        assertEquals(order, OrderJournalCodec.decode(OrderJournalCodec.encode(order)));
+    }
+
+    private OrderJournal open(int maxSegments) throws Exception {
+        JournalConfig config = new JournalConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeBytes(SEGMENT_SIZE);
+        config.setMaxSegments(maxSegments);
+        config.setGroupCommitMaxWaitMicros(0);
+
+        OrderJournal journal = new OrderJournal(config);
+        journal.open();
+        return journal;
+    }
+
+    private static long append(OrderJournal journal, byte[] payload) throws Exception {
+        return journal.append("order-" + payload[0], payload).get(5, TimeUnit.SECONDS);
+    }
+
+    private static byte[] payload(int n) {
+        byte[] payload = new byte[20];
+        Arrays.fill(payload, (byte) (n + 1));
+        return payload;
+    }
+}
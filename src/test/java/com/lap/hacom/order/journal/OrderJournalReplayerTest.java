@@ -0,0 +1,146 @@
+package com.lap.hacom.order.journal;
+
+import com.lap.hacom.order.config.JournalConfig;
+import com.lap.hacom.order.model.Order;
+import com.lap.hacom.order.model.OutboxMessage;
+import com.lap.hacom.order.service.OrderBatchWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderJournalReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * The first replay stores order-1 but dies before its outbox entry is written; the node
+     * restarts and replays the batch again. Every order ends up stored once, order-1 gets its
+     * outbox entry, and nothing is left to replay.
+     */
+    @Test
+    void crashBetweenOrderInsertAndOutboxWriteLosesNoNotification() throws Exception {
+        OrderJournal journal = open();
+        for (int i = 0; i < 3; i++) {
+            journal.append("order-" + i, OrderJournalCodec.encode(order(i))).get(5, TimeUnit.SECONDS);
+        }
+
+        OrderBatchWriter firstWriter = mock(OrderBatchWriter.class);
+        when(firstWriter.insert(any(Order.class), any(OutboxMessage.class))).thenAnswer(call -> {
+            Order order = call.getArgument(0);
+            return order.getOrderId().equals("order-1")
+                    ? Mono.error(new DataAccessResourceFailureException("Outbox entry for order order-1 was not stored"))
+                    : Mono.just(order);
+        });
+
+        OrderJournalReplayer first = replayer(journal, firstWriter);
+        assertThrows(DataAccessResourceFailureException.class, () -> first.drain().block());
+        assertEquals(0, journal.checkpointPosition());
+        long end = journal.durablePosition();
+        journal.close();
+
+        // Restart: everything after the checkpoint is replayed and visible to lookups meanwhile
+        OrderJournal reopened = open();
+        OrderBatchWriter secondWriter = mock(OrderBatchWriter.class);
+        when(secondWriter.insert(any(Order.class), any(OutboxMessage.class))).thenAnswer(call -> {
+            Order order = call.getArgument(0);
+            return order.getOrderId().equals("order-2")
+                    ? Mono.just(order)
+                    : Mono.error(new DuplicateKeyException("E11000 duplicate key " + order.getOrderId()));
+        });
+        when(secondWriter.writeOutbox(any(OutboxMessage.class))).thenReturn(Mono.empty());
+
+        OrderJournalReplayer second = replayer(reopened, secondWriter);
+        second.indexUnreplayed();
+        assertEquals(3, reopened.unreplayedCount());
+        assertEquals(order(1), OrderJournalCodec.decode(reopened.find("order-1").orElseThrow()));
+
+        second.drain().block();
+
+        ArgumentCaptor<OutboxMessage> rewritten = ArgumentCaptor.forClass(OutboxMessage.class);
+        verify(secondWriter, times(2)).writeOutbox(rewritten.capture());
+        assertEquals(List.of("order-0", "order-1"),
+                rewritten.getAllValues().stream().map(OutboxMessage::getOrderId).sorted().toList());
+        verify(secondWriter, times(1)).insert(argThat(order -> order.getOrderId().equals("order-2")), any());
+
+        assertEquals(end, reopened.checkpointPosition());
+        assertEquals(0, reopened.unreplayedCount());
+        assertTrue(reopened.find("order-1").isEmpty());
+
+        // Nothing is replayed twice
+        second.drain().block();
+        verify(secondWriter, times(3)).insert(any(), any());
+        reopened.close();
+    }
+
+    @Test
+    void replayedBatchIsNotReplayedAfterRestart() throws Exception {
+        OrderJournal journal = open();
+        for (int i = 0; i < 3; i++) {
+            journal.append("order-" + i, OrderJournalCodec.encode(order(i))).get(5, TimeUnit.SECONDS);
+        }
+
+        OrderBatchWriter writer = mock(OrderBatchWriter.class);
+        when(writer.insert(any(Order.class), any(OutboxMessage.class)))
+                .thenAnswer(call -> Mono.just(call.getArgument(0)));
+        replayer(journal, writer).drain().block();
+        verify(writer, times(3)).insert(any(), any());
+        journal.close();
+
+        OrderJournal reopened = open();
+        OrderBatchWriter afterRestart = mock(OrderBatchWriter.class);
+        OrderJournalReplayer replayer = replayer(reopened, afterRestart);
+        replayer.indexUnreplayed();
+        replayer.drain().block();
+
+        assertEquals(0, reopened.unreplayedCount());
+        verify(afterRestart, never()).insert(any(), any());
+        reopened.close();
+    }
+
+    private OrderJournal open() throws Exception {
+        OrderJournal journal = new OrderJournal(config());
+        journal.open();
+        return journal;
+    }
+
+    private OrderJournalReplayer replayer(OrderJournal journal, OrderBatchWriter writer) {
+        return new OrderJournalReplayer(journal, writer, config(), new SimpleMeterRegistry());
+    }
+
+    private JournalConfig config() {
+        JournalConfig config = new JournalConfig();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeBytes(4096);
+        config.setGroupCommitMaxWaitMicros(0);
+        return config;
+    }
+
+    private static Order order(int n) {
+        return new Order(new ObjectId(String.format("%024x", n + 1)), "order-" + n, "customer-" + n, "+5199900000" + n,
+                "COMPLETED", List.of("item-" + n), OffsetDateTime.of(2025, 5, 1, 10, n, 0, 0, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,135 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.config.MongoClientConfig;
+import com.lap.hacom.order.model.Order;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs {@link OrderBatchWriter} against a mocked driver collection, so flushes happen for real
+ * but nothing leaves the JVM. Each write concern gets its own collection mock, which tells
+ * which write concern a write went out with.
+ */
+class OrderBatchWriterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final Map<WriteConcern, MongoCollection<Order>> collections = new ConcurrentHashMap<>();
+
+    private MongoClientConfig mongoClientConfig;
+    private OrderBatchWriter writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MongoCollection<Document> rawCollection = mock(MongoCollection.class);
+        MongoCollection<Order> orderCollection = mock(MongoCollection.class);
+        when(rawCollection.withDocumentClass(Order.class)).thenReturn(orderCollection);
+        when(orderCollection.withWriteConcern(any(WriteConcern.class)))
+                .thenAnswer(call -> collections.computeIfAbsent(call.getArgument(0), writeConcern -> writableCollection()));
+
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.getCollectionName(Order.class)).thenReturn("orders");
+        when(mongoTemplate.getCollection("orders")).thenReturn(Mono.just(rawCollection));
+
+        OrderRollupService orderRollupService = mock(OrderRollupService.class);
+        when(orderRollupService.recordInserted(anyList())).thenReturn(Mono.empty());
+        when(orderRollupService.recordStatusChange(any(Order.class), anyString(), anyString())).thenReturn(Mono.empty());
+
+        mongoClientConfig = new MongoClientConfig();
+        mongoClientConfig.setStatusWriteConcern(Map.of("PROCESSING", "W1", "COMPLETED", "MAJORITY"));
+        // Long enough that a status change made right after the insert is folded into it
+        writer = new OrderBatchWriter(mongoTemplate, orderRollupService, mongoClientConfig,
+                new SimpleMeterRegistry(), 256, 50, 4);
+        writer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.destroy();
+    }
+
+    @Test
+    void completionFoldedIntoThePendingInsertUsesTheCompletedWriteConcern() {
+        Order order = order("order-1", "PROCESSING");
+        Mono<Order> inserted = writer.insert(order);
+        Mono<Order> completed = writer.updateStatus("order-1", "COMPLETED");
+
+        assertEquals("COMPLETED", inserted.block(TIMEOUT).getStatus());
+        assertEquals("COMPLETED", completed.block(TIMEOUT).getStatus());
+
+        verify(collections.get(WriteConcern.MAJORITY), times(1)).insertMany(eq(List.of(order)), any());
+        assertEquals(Map.of(WriteConcern.MAJORITY, collections.get(WriteConcern.MAJORITY)), collections);
+    }
+
+    @Test
+    void statusChangeAfterTheFlushIsAnUpdateWithTheNewStatusWriteConcern() {
+        Order order = order("order-1", "PROCESSING");
+        writer.insert(order).block(TIMEOUT);
+        verify(collections.get(WriteConcern.W1), times(1)).insertMany(eq(List.of(order)), any());
+
+        assertEquals("COMPLETED", writer.updateStatus("order-1", "COMPLETED").block(TIMEOUT).getStatus());
+
+        MongoCollection<Order> majority = collections.get(WriteConcern.MAJORITY);
+        verify(majority, times(1)).findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class));
+        verify(majority, never()).insertMany(anyList(), any());
+    }
+
+    @Test
+    void failedFlushFailsItsOrdersAndLaterBatchesStillRun() {
+        // Resolving the write concern throws inside flush, before any write is attempted
+        mongoClientConfig.setStatusWriteConcern(Map.of("BROKEN", "NO_SUCH_WRITE_CONCERN", "PROCESSING", "W1"));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> writer.insert(order("order-1", "BROKEN")).block(TIMEOUT));
+        assertEquals("Unknown write concern NO_SUCH_WRITE_CONCERN for status BROKEN", error.getMessage());
+
+        Order order = order("order-2", "PROCESSING");
+        assertEquals(order, writer.insert(order).block(TIMEOUT));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MongoCollection<Order> writableCollection() {
+        MongoCollection<Order> collection = mock(MongoCollection.class);
+        when(collection.insertMany(anyList(), any())).thenReturn(Mono.just(InsertManyResult.acknowledged(Map.of())));
+        // Answers with the stored order as it was before the update
+        when(collection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+                .thenAnswer(call -> Mono.just(order("order-1", "PROCESSING")));
+        return collection;
+    }
+
+    private static Order order(String orderId, String status) {
+        return new Order(new ObjectId(), orderId, "customer-1", "+51999000001", status, List.of("item-1"),
+                OffsetDateTime.of(2025, 5, 1, 10, 0, 0, 0, ZoneOffset.UTC));
+    }
+}
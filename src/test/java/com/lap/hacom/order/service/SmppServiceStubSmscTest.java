@@ -0,0 +1,133 @@
+package com.lap.hacom.order.service;
+
+import com.lap.hacom.order.client.StubSmscServer;
+import com.lap.hacom.order.config.ExecutionConfig;
+import com.lap.hacom.order.config.SmppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link SmppService} against an in-process {@link StubSmscServer} with injected submit
+ * latency. Bounds are loose on purpose: they separate "waits on the SMSC" from "doesn't" by an
+ * order of magnitude, not by milliseconds.
+ */
+class SmppServiceStubSmscTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private StubSmscServer smsc;
+    private SmppService smppService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int port = freePort();
+        smsc = new StubSmscServer(port, 0);
+        smsc.start();
+
+        SmppConfig smppConfig = new SmppConfig();
+        smppConfig.setEnabled(true);
+        smppConfig.setHost("127.0.0.1");
+        smppConfig.setPort(port);
+        smppConfig.setSystemId("test");
+        smppConfig.setPassword("test");
+        smppConfig.setSystemType("");
+        smppConfig.setInterfaceVersion((byte) 0x34);
+        smppConfig.setSourceAddress("HACOM");
+        smppConfig.setSessionCount(2);
+        smppConfig.setWindowSize(10);
+        smppConfig.setSubmitTimeoutMs(1000);
+        smppConfig.setMaxTps(100_000);
+        smppConfig.setMaxBurst(1000);
+        smppConfig.setNotificationThreads(4);
+        smppConfig.setNotificationQueueCapacity(1000);
+
+        smppService = new SmppService(smppConfig, new ExecutionConfig(), new SimpleMeterRegistry());
+        smppService.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        smppService.destroy();
+        smsc.close();
+    }
+
+    @Test
+    void slowSmscDoesNotSlowDownTheCaller() throws Exception {
+        // Warms up the sessions and the notification scheduler
+        handOff(200, 0);
+        long slowHandOffMs = TimeUnit.NANOSECONDS.toMillis(handOff(200, 500));
+
+        // 200 submits at 500 ms through 20 window slots take about 5 s; handing them over must not
+        assertTrue(slowHandOffMs < 250, "hand-off took " + slowHandOffMs + " ms");
+    }
+
+    @Test
+    void submitsArePipelinedAcrossWindowsAndSessions() {
+        smsc.setLatencyMs(200);
+
+        long startNanos = System.nanoTime();
+        List<SmsSubmitResult> results = Flux.range(0, 40)
+                .flatMap(i -> smppService.submitSms("+5199900000" + (i % 10), "order " + i), 40)
+                .collectList()
+                .block(TIMEOUT);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertEquals(40, results.stream().filter(result -> result == SmsSubmitResult.SENT).count());
+        // One at a time this would take 40 x 200 ms; two sessions with a window of 10 need about 2 x 200 ms
+        assertTrue(elapsedMs < 2000, "40 submits took " + elapsedMs + " ms");
+    }
+
+    @Test
+    void submitTimeoutIsRetryableAndFreesTheWindow() {
+        smsc.setLatencyMs(3000);
+        List<SmsSubmitResult> timedOut = Flux.range(0, 20)
+                .flatMap(i -> smppService.submitSms("+51999000001", "order " + i), 20)
+                .collectList()
+                .block(TIMEOUT);
+        assertTrue(timedOut.stream().allMatch(result -> result == SmsSubmitResult.RETRYABLE_FAILURE), timedOut::toString);
+
+        // Every window slot was held by a timed out submit; they must be free again
+        smsc.setLatencyMs(0);
+        assertEquals(SmsSubmitResult.SENT, smppService.submitSms("+51999000001", "after timeout").block(TIMEOUT));
+    }
+
+    // Time the calling thread spends subscribing to count submits, then waits for them to finish
+    private long handOff(int count, long latencyMs) throws InterruptedException {
+        smsc.setLatencyMs(latencyMs);
+        CountDownLatch done = new CountDownLatch(count);
+        ConcurrentLinkedQueue<SmsSubmitResult> results = new ConcurrentLinkedQueue<>();
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            smppService.submitSms("+51999000002", "order " + i).subscribe(result -> {
+                results.add(result);
+                done.countDown();
+            });
+        }
+        long handOffNanos = System.nanoTime() - startNanos;
+
+        assertTrue(done.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        assertTrue(results.stream().allMatch(result -> result == SmsSubmitResult.SENT), results::toString);
+        return handOffNanos;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}